@@ -0,0 +1,142 @@
+package org.stonlexx.protocol.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import org.stonlexx.protocol.lib.packet.Packet;
+import org.stonlexx.protocol.lib.packet.PacketProcessor;
+import org.stonlexx.protocol.lib.packet.PacketProtocol;
+import org.stonlexx.protocol.lib.util.PacketUtils;
+
+/**
+ * Packets shared by the benchmarks, registered in both directions of {@link PacketProtocol#HANDSHAKE}
+ */
+public final class BenchmarkPackets {
+
+    public static final int SMALL_ID = 0x01;
+    public static final int MEDIUM_ID = 0x02;
+    public static final int LARGE_ID = 0x03;
+
+    private static boolean registered;
+
+    private BenchmarkPackets() {
+    }
+
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+
+        registerPacket(SMALL_ID, SmallPacket.class);
+        registerPacket(MEDIUM_ID, MediumPacket.class);
+        registerPacket(LARGE_ID, LargePacket.class);
+
+        registered = true;
+    }
+
+    private static <T extends Packet> void registerPacket(int id, Class<T> cls) {
+        PacketProtocol.HANDSHAKE.TO_SERVER.registerPacket(id, cls);
+        PacketProtocol.HANDSHAKE.TO_CLIENT.registerPacket(id, cls);
+    }
+
+    /**
+     * One int, 5 bytes on the wire with its id
+     */
+    public static class SmallPacket extends Packet {
+
+        public int value;
+
+        public SmallPacket() {
+        }
+
+        public SmallPacket(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public void process(PacketProcessor processor) {
+        }
+
+        @Override
+        public void read(ByteBuf buf) {
+            value = buf.readInt();
+        }
+
+        @Override
+        public void write(ByteBuf buf) {
+            buf.writeInt(value);
+        }
+    }
+
+    /**
+     * A few primitives and a short string
+     */
+    public static class MediumPacket extends Packet {
+
+        public long id;
+        public int x, y, z;
+        public String name;
+
+        public MediumPacket() {
+        }
+
+        public MediumPacket(long id, int x, int y, int z, String name) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.name = name;
+        }
+
+        @Override
+        public void process(PacketProcessor processor) {
+        }
+
+        @Override
+        public void read(ByteBuf buf) {
+            id = buf.readLong();
+            x = PacketUtils.readVarInt(buf);
+            y = PacketUtils.readVarInt(buf);
+            z = PacketUtils.readVarInt(buf);
+            name = PacketUtils.readString(buf, Short.MAX_VALUE);
+        }
+
+        @Override
+        public void write(ByteBuf buf) {
+            buf.writeLong(id);
+            PacketUtils.writeVarInt(buf, x);
+            PacketUtils.writeVarInt(buf, y);
+            PacketUtils.writeVarInt(buf, z);
+            PacketUtils.writeString(buf, name);
+        }
+    }
+
+    /**
+     * An opaque payload of any size
+     */
+    public static class LargePacket extends Packet {
+
+        public byte[] payload;
+
+        public LargePacket() {
+        }
+
+        public LargePacket(byte[] payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public void process(PacketProcessor processor) {
+        }
+
+        @Override
+        public void read(ByteBuf buf) {
+            payload = new byte[PacketUtils.readVarInt(buf)];
+            buf.readBytes(payload);
+        }
+
+        @Override
+        public void write(ByteBuf buf) {
+            PacketUtils.writeVarInt(buf, payload.length);
+            buf.writeBytes(payload);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.stonlexx.protocol.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
+import org.stonlexx.protocol.lib.packet.Packet;
+import org.stonlexx.protocol.lib.packet.PacketDirection;
+import org.stonlexx.protocol.lib.pipeline.PacketDecoder;
+import org.stonlexx.protocol.lib.pipeline.PacketEncoder;
+import org.stonlexx.protocol.lib.pipeline.PacketFramer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full encode and decode of a single packet through the real pipeline handlers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String packetType;
+
+    /**
+     * Per-type histograms and counters, see {@link PerformanceMetrics#setDetailedMetricsEnabled(boolean)}
+     */
+    @Param({"false", "true"})
+    public boolean detailedMetrics;
+
+    private EmbeddedChannel channel;
+
+    private Packet packet;
+    private ByteBuf encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkPackets.register();
+        PerformanceMetrics.setDetailedMetricsEnabled(detailedMetrics);
+
+        switch (packetType) {
+            case "small":
+                packet = new BenchmarkPackets.SmallPacket(42);
+                break;
+
+            case "medium":
+                packet = new BenchmarkPackets.MediumPacket(1L << 40, 100, -64, 70000, "benchmark-entity");
+                break;
+
+            default:
+                packet = new BenchmarkPackets.LargePacket(new byte[8192]);
+                break;
+        }
+
+        channel = new EmbeddedChannel(new PacketFramer(),
+                new PacketDecoder(PacketDirection.TO_SERVER), new PacketEncoder(PacketDirection.TO_SERVER));
+
+        channel.writeOutbound(packet);
+        encoded = channel.readOutbound();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        encoded.release();
+        channel.finishAndReleaseAll();
+
+        PerformanceMetrics.setDetailedMetricsEnabled(false);
+    }
+
+    @Benchmark
+    public int encode() {
+        channel.writeOutbound(packet);
+        ByteBuf buf = channel.readOutbound();
+
+        int length = buf.readableBytes();
+        buf.release();
+
+        return length;
+    }
+
+    @Benchmark
+    public Packet decode() {
+        channel.writeInbound(encoded.retainedDuplicate());
+        return channel.readInbound();
+    }
+
+    @Benchmark
+    public Packet roundTrip() {
+        channel.writeOutbound(packet);
+        channel.writeInbound((ByteBuf) channel.readOutbound());
+
+        return channel.readInbound();
+    }
+}
@@ -0,0 +1,90 @@
+package org.stonlexx.protocol.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.stonlexx.protocol.lib.pipeline.PacketFramer;
+import org.stonlexx.protocol.lib.util.PacketUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting a read of {@value #FRAMES} frames, and writing a frame header
+ * <br>the way {@link org.stonlexx.protocol.lib.pipeline.PacketEncoder} does
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketFramerBenchmark {
+
+    private static final int FRAMES = 64;
+
+    @Param({"8", "512"})
+    public int frameLength;
+
+    private EmbeddedChannel channel;
+    private ByteBuf frames;
+    private ByteBuf out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        channel = new EmbeddedChannel(new PacketFramer());
+        frames = PooledByteBufAllocator.DEFAULT.directBuffer();
+
+        for (int i = 0; i < FRAMES; i++) {
+            PacketUtils.writeVarInt(frames, frameLength);
+            frames.writeZero(frameLength);
+        }
+
+        out = PooledByteBufAllocator.DEFAULT.directBuffer(frameLength + PacketFramer.MAX_HEADER_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        frames.release();
+        out.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void decode(Blackhole blackhole) {
+        channel.writeInbound(frames.retainedDuplicate());
+
+        ByteBuf frame;
+
+        while ((frame = channel.readInbound()) != null) {
+            blackhole.consume(frame.readableBytes());
+            frame.release();
+        }
+    }
+
+    @Benchmark
+    public ByteBuf encodeHeader() {
+        out.clear();
+
+        out.writerIndex(PacketFramer.MAX_HEADER_SIZE);
+        out.writeZero(frameLength);
+
+        PacketUtils.setPaddedVarInt(out, 0, frameLength);
+        return out;
+    }
+}
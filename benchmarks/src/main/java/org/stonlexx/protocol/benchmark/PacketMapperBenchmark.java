@@ -0,0 +1,90 @@
+package org.stonlexx.protocol.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stonlexx.protocol.lib.packet.Packet;
+import org.stonlexx.protocol.lib.packet.PacketMapper;
+import org.stonlexx.protocol.lib.packet.PacketProtocol;
+import org.stonlexx.protocol.lib.util.MetafactoryUtil;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Id lookups and packet instantiation, compared with plain reflection and {@code new}
+ * <br>and with the former Trove-backed mapper ({@link LegacyPacketMapper})
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketMapperBenchmark {
+
+    private PacketMapper mapper;
+    private LegacyPacketMapper legacyMapper;
+
+    private Supplier<BenchmarkPackets.MediumPacket> metafactory;
+    private Constructor<BenchmarkPackets.MediumPacket> constructor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkPackets.register();
+
+        mapper = PacketProtocol.HANDSHAKE.TO_SERVER;
+
+        legacyMapper = new LegacyPacketMapper();
+        legacyMapper.registerPacket(BenchmarkPackets.SMALL_ID, BenchmarkPackets.SmallPacket.class, MetafactoryUtil.objectConstructor(BenchmarkPackets.SmallPacket.class));
+        legacyMapper.registerPacket(BenchmarkPackets.MEDIUM_ID, BenchmarkPackets.MediumPacket.class, MetafactoryUtil.objectConstructor(BenchmarkPackets.MediumPacket.class));
+        legacyMapper.registerPacket(BenchmarkPackets.LARGE_ID, BenchmarkPackets.LargePacket.class, MetafactoryUtil.objectConstructor(BenchmarkPackets.LargePacket.class));
+
+        metafactory = MetafactoryUtil.objectConstructor(BenchmarkPackets.MediumPacket.class);
+        constructor = BenchmarkPackets.MediumPacket.class.getConstructor();
+    }
+
+    @Benchmark
+    public int getPacketId() {
+        return mapper.getPacketId(BenchmarkPackets.MediumPacket.class);
+    }
+
+    @Benchmark
+    public Packet newPacket() {
+        return mapper.newPacket(BenchmarkPackets.MEDIUM_ID);
+    }
+
+    @Benchmark
+    public int legacyGetPacketId() {
+        return legacyMapper.getPacketId(BenchmarkPackets.MediumPacket.class);
+    }
+
+    @Benchmark
+    public Packet legacyNewPacket() {
+        return legacyMapper.newPacket(BenchmarkPackets.MEDIUM_ID);
+    }
+
+    @Benchmark
+    public Packet metafactoryConstructor() {
+        return metafactory.get();
+    }
+
+    @Benchmark
+    public Packet reflectiveConstructor() throws Exception {
+        return constructor.newInstance();
+    }
+
+    @Benchmark
+    public Packet directConstructor() {
+        return new BenchmarkPackets.MediumPacket();
+    }
+}
@@ -0,0 +1,174 @@
+package org.stonlexx.protocol.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stonlexx.protocol.lib.util.PacketUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketUtilsBenchmark {
+
+    @State(Scope.Thread)
+    public static class VarIntState {
+
+        /**
+         * 1, 2, 3 and 5 byte VarInts
+         */
+        @Param({"1", "300", "70000", "-1"})
+        public int value;
+
+        private ByteBuf out;
+        private ByteBuf in;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            out = PooledByteBufAllocator.DEFAULT.heapBuffer(16);
+
+            in = PooledByteBufAllocator.DEFAULT.heapBuffer(16);
+            PacketUtils.writeVarInt(in, value);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            out.release();
+            in.release();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class StringState {
+
+        @Param({"16", "256"})
+        public int length;
+
+        private String string;
+        private List<String> strings;
+        private int[] intArray;
+
+        private ByteBuf out;
+
+        private ByteBuf stringIn;
+        private ByteBuf collectionIn;
+        private ByteBuf intArrayIn;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            char[] chars = new char[length];
+            Arrays.fill(chars, 'a');
+
+            string = new String(chars);
+            strings = new ArrayList<>();
+
+            for (int i = 0; i < 16; i++) {
+                strings.add(string);
+            }
+
+            intArray = new int[64];
+            Arrays.setAll(intArray, i -> i * 1000);
+
+            out = PooledByteBufAllocator.DEFAULT.heapBuffer(64 * 1024);
+
+            stringIn = PooledByteBufAllocator.DEFAULT.heapBuffer();
+            PacketUtils.writeString(stringIn, string);
+
+            collectionIn = PooledByteBufAllocator.DEFAULT.heapBuffer();
+            PacketUtils.writeStringCollection(collectionIn, strings);
+
+            intArrayIn = PooledByteBufAllocator.DEFAULT.heapBuffer();
+            PacketUtils.writeIntArray(intArrayIn, intArray);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            out.release();
+            stringIn.release();
+            collectionIn.release();
+            intArrayIn.release();
+        }
+    }
+
+    @Benchmark
+    public ByteBuf writeVarInt(VarIntState state) {
+        state.out.clear();
+        PacketUtils.writeVarInt(state.out, state.value);
+
+        return state.out;
+    }
+
+    @Benchmark
+    public int readVarInt(VarIntState state) {
+        state.in.readerIndex(0);
+        return PacketUtils.readVarInt(state.in);
+    }
+
+    @Benchmark
+    public int varIntSize(VarIntState state) {
+        return PacketUtils.getVarIntSize(state.value);
+    }
+
+    @Benchmark
+    public ByteBuf writeString(StringState state) {
+        state.out.clear();
+        PacketUtils.writeString(state.out, state.string);
+
+        return state.out;
+    }
+
+    @Benchmark
+    public String readString(StringState state) {
+        state.stringIn.readerIndex(0);
+        return PacketUtils.readString(state.stringIn, Short.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ByteBuf writeStringCollection(StringState state) {
+        state.out.clear();
+        PacketUtils.writeStringCollection(state.out, state.strings);
+
+        return state.out;
+    }
+
+    @Benchmark
+    public Collection<String> readStringCollection(StringState state) {
+        ByteBuf in = state.collectionIn;
+        in.readerIndex(0);
+
+        return PacketUtils.readCollection(in, ArrayList::new, () -> PacketUtils.readString(in, Short.MAX_VALUE));
+    }
+
+    @Benchmark
+    public ByteBuf writeIntArray(StringState state) {
+        state.out.clear();
+        PacketUtils.writeIntArray(state.out, state.intArray);
+
+        return state.out;
+    }
+
+    @Benchmark
+    public int[] readIntArray(StringState state) {
+        state.intArrayIn.readerIndex(0);
+        return PacketUtils.readIntArray(state.intArrayIn);
+    }
+}
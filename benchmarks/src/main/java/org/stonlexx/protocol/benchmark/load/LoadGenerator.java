@@ -0,0 +1,582 @@
+package org.stonlexx.protocol.benchmark.load;
+
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.stonlexx.protocol.benchmark.BenchmarkPackets;
+import org.stonlexx.protocol.lib.channel.AbstractClientChannel;
+import org.stonlexx.protocol.lib.channel.AbstractRemoteClientChannel;
+import org.stonlexx.protocol.lib.channel.AbstractRemoteServerChannel;
+import org.stonlexx.protocol.lib.channel.AbstractServerChannel;
+import org.stonlexx.protocol.lib.channel.EventLoopResources;
+import org.stonlexx.protocol.lib.channel.Transport;
+import org.stonlexx.protocol.lib.metrics.LatencyHistogram;
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
+import org.stonlexx.protocol.lib.packet.Packet;
+import org.stonlexx.protocol.lib.pipeline.PacketExecutor;
+import org.stonlexx.protocol.lib.pipeline.StripedPacketExecutor;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Loopback load test: a server and {@code connections} clients in one process.
+ * <br>With a target rate the load is open-loop: every packet has an intended send time
+ * <br>on a fixed schedule, and latency is measured from that time, not from the moment
+ * <br>the packet was actually sent. A stall then shows up in the latency of every packet
+ * <br>it delayed, instead of just the one that hit it (coordinated omission).
+ * <br>In request mode the server echoes every packet back as the response,
+ * <br>in fire mode only throughput is measured, on the server side.
+ * <br>In connect mode every connection is opened, does one round trip and is closed,
+ * <br>which measures how fast the server accepts connections
+ */
+public final class LoadGenerator {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private static final String VIRTUAL_THREAD_EXECUTOR = "org.stonlexx.protocol.lib.virtual.VirtualThreadPacketExecutor";
+
+    private final LoadOptions options;
+    private final PacketMix mix;
+
+    /**
+     * Packets sent, connections opened in connect mode
+     */
+    private final LongAdder sent = new LongAdder();
+
+    /**
+     * Responses received in request and connect modes, packets received by the server in fire mode
+     */
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * From the intended send time, and from the actual one for comparison
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram uncorrectedLatency = new LatencyHistogram();
+
+    /**
+     * Packets intended to be sent before this moment are not measured
+     */
+    private volatile long measureStartTime = Long.MAX_VALUE;
+    private volatile boolean running = true;
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.mix = new PacketMix(options.mix, options.payload);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.USAGE);
+
+            System.exit(1);
+            return;
+        }
+
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        BenchmarkPackets.register();
+        PerformanceMetrics.setDetailedMetricsEnabled(options.detailedMetrics);
+
+        LoadServer server = new LoadServer();
+        PacketExecutor packetExecutor = newPacketExecutor();
+
+        server.setPacketExecutor(packetExecutor);
+
+        if (options.acceptors > 1) {
+            server.setAcceptors(options.acceptors);
+
+            if (server.getAcceptors() != options.acceptors) {
+                System.out.println("SO_REUSEPORT requires the epoll transport, " + options.transport + " binds a single acceptor");
+            }
+        }
+
+        if (options.flushConsolidation > 0) {
+            server.enableFlushConsolidation(options.flushConsolidation);
+        }
+
+        server.bindSynchronized();
+
+        EventLoopResources clientResources = EventLoopResources.create(options.transport, options.threads);
+        LoadClient[] clients = new LoadClient[options.connections];
+
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = new LoadClient(clientResources);
+
+            if (options.flushConsolidation > 0) {
+                clients[i].enableFlushConsolidation(options.flushConsolidation);
+            }
+
+            if (!options.connect) {
+                clients[i].connectSynchronized();
+            }
+        }
+
+        System.out.println("Load: " + options);
+
+        List<Thread> senders = startSenders(clients);
+
+        report("warmup", options.warmup);
+
+        measureStartTime = System.nanoTime();
+
+        long startSent = sent.sum();
+        long startCompleted = completed.sum();
+        long startTraffic = PerformanceMetrics.TRAFFIC_UPLOAD.getTotalValue();
+        long[] startSyscalls = readSyscalls();
+
+        report("measure", options.duration);
+
+        long elapsed = System.nanoTime() - measureStartTime;
+
+        long totalSent = sent.sum() - startSent;
+        long totalCompleted = completed.sum() - startCompleted;
+        long totalTraffic = PerformanceMetrics.TRAFFIC_UPLOAD.getTotalValue() - startTraffic;
+        long[] endSyscalls = readSyscalls();
+
+        running = false;
+
+        for (Thread sender : senders) {
+            sender.join();
+        }
+
+        awaitPendingRequests();
+
+        printSummary(elapsed, totalSent, totalCompleted, totalTraffic);
+        printSyscalls(startSyscalls, endSyscalls, totalSent);
+
+        // io_uring event loops wait in their cleanup for channels left open on them
+        for (LoadClient client : clients) {
+            client.shutdown();
+
+            if (client.getChannel() != null) {
+                client.getChannel().closeSync();
+            }
+        }
+
+        clientResources.shutdownGracefully().syncUninterruptibly();
+        server.shutdown().syncUninterruptibly();
+
+        if (packetExecutor != null) {
+            packetExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Every packet is offloaded, {@link BenchmarkPackets} do not ask for it themselves
+     */
+    private PacketExecutor newPacketExecutor() throws ReflectiveOperationException {
+        String[] parts = options.packetExecutor.split(":");
+
+        switch (parts[0]) {
+            case "inline":
+                return null;
+
+            case "striped":
+                int stripes = parts.length > 1 ? Integer.parseInt(parts[1]) : 16;
+
+                return new StripedPacketExecutor(stripes) {
+
+                    @Override
+                    public boolean offloads(Packet packet) {
+                        return true;
+                    }
+                };
+
+            case "virtual":
+                try {
+                    // built for Java 21 in its own module, offloads every packet already
+                    return (PacketExecutor) Class.forName(VIRTUAL_THREAD_EXECUTOR).getConstructor().newInstance();
+                } catch (ClassNotFoundException | UnsupportedClassVersionError e) {
+                    throw new IllegalStateException("packetExecutor=virtual needs Java 21 and the virtual-threads module on the classpath", e);
+                }
+
+            default:
+                throw new IllegalArgumentException("Unknown packetExecutor: " + options.packetExecutor);
+        }
+    }
+
+    private List<Thread> startSenders(LoadClient[] clients) {
+        List<Thread> senders = new ArrayList<>();
+
+        for (int i = 0; i < options.senders; i++) {
+            List<LoadClient> senderClients = new ArrayList<>();
+
+            for (int j = i; j < clients.length; j += options.senders) {
+                senderClients.add(clients[j]);
+            }
+
+            double interval = options.rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(options.senders) / (double) options.rate;
+
+            Thread thread = new Thread(new Sender(senderClients.toArray(new LoadClient[0]), interval), "Load Sender #" + i);
+            thread.setDaemon(true);
+            thread.start();
+
+            senders.add(thread);
+        }
+
+        return senders;
+    }
+
+    private void report(String phase, int seconds) throws InterruptedException {
+        long lastSent = sent.sum();
+        long lastCompleted = completed.sum();
+        long lastTraffic = PerformanceMetrics.TRAFFIC_UPLOAD.getTotalValue();
+
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(1000);
+
+            long currentSent = sent.sum();
+            long currentCompleted = completed.sum();
+            long currentTraffic = PerformanceMetrics.TRAFFIC_UPLOAD.getTotalValue();
+
+            System.out.println(String.format("[%s %3ds] sent %d/s, completed %d/s, %.2f MB/s, pending requests %d",
+                    phase, second, currentSent - lastSent, currentCompleted - lastCompleted,
+                    toMegabytes(currentTraffic - lastTraffic), PerformanceMetrics.PENDING_REQUESTS.sum()));
+
+            lastSent = currentSent;
+            lastCompleted = currentCompleted;
+            lastTraffic = currentTraffic;
+        }
+    }
+
+    private void awaitPendingRequests() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + options.timeout + 1000;
+
+        while (PerformanceMetrics.PENDING_REQUESTS.sum() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void printSummary(long elapsed, long totalSent, long totalCompleted, long totalTraffic) {
+        double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+
+        System.out.println();
+        System.out.println("Load:      " + options);
+        System.out.println(String.format("Duration:  %.1f s", seconds));
+        String unit = options.connect ? "connections" : "packets";
+
+        System.out.println(String.format("Sent:      %.0f %s/s (%d total)", totalSent / seconds, unit, totalSent));
+        System.out.println(String.format("Completed: %.0f %s/s (%d total)", totalCompleted / seconds, unit, totalCompleted));
+        System.out.println(String.format("Traffic:   %.2f MB/s written, both directions", toMegabytes(totalTraffic) / seconds));
+
+        if (!options.request) {
+            return;
+        }
+
+        if (options.connect) {
+            System.out.println("Latency covers the connect and the first round trip, not the close");
+        }
+
+        if (options.rate > 0) {
+            System.out.println("Latency from the intended send time:");
+            printLatency(latency);
+
+            System.out.println("Latency from the actual send time (uncorrected):");
+            printLatency(uncorrectedLatency);
+        } else {
+            System.out.println("Latency (closed loop, no intended send time):");
+            printLatency(uncorrectedLatency);
+        }
+
+        System.out.println("Timeouts:  " + timeouts.sum() + ", failures: " + failures.sum());
+    }
+
+    /**
+     * Read and write syscalls of the whole process, server and clients together.
+     * <br>Linux only, and only for NIO: native epoll sends and receives with
+     * <br>send()/recv(), which are not counted there, io_uring with no syscall per write at all
+     */
+    private void printSyscalls(long[] start, long[] end, long totalSent) {
+        if (options.transport != Transport.NIO || start == null || end == null || totalSent == 0) {
+            return;
+        }
+
+        System.out.println(String.format("Syscalls:  %.3f reads, %.3f writes per sent %s (/proc/self/io)",
+                (end[0] - start[0]) / (double) totalSent, (end[1] - start[1]) / (double) totalSent,
+                options.connect ? "connection" : "packet"));
+    }
+
+    /**
+     * @return syscr and syscw of /proc/self/io, null if there is none
+     */
+    private static long[] readSyscalls() {
+        try {
+            long[] syscalls = new long[2];
+
+            for (String line : Files.readAllLines(Paths.get("/proc/self/io"))) {
+                if (line.startsWith("syscr:")) {
+                    syscalls[0] = Long.parseLong(line.substring(6).trim());
+                } else if (line.startsWith("syscw:")) {
+                    syscalls[1] = Long.parseLong(line.substring(6).trim());
+                }
+            }
+
+            return syscalls;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void printLatency(LatencyHistogram histogram) {
+        long[] values = new long[PERCENTILES.length];
+        histogram.getValuesAtPercentiles(PERCENTILES, values);
+
+        StringBuilder line = new StringBuilder("  ");
+
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            line.append(String.format("p%s=%.1fus  ", PERCENTILES[i], values[i] / 1000D));
+        }
+
+        line.append(String.format("max=%.1fus  mean=%.1fus  count=%d",
+                histogram.getMax() / 1000D, histogram.getMean() / 1000, histogram.getCount()));
+
+        System.out.println(line.toString().replace(".0=", "="));
+    }
+
+    private static double toMegabytes(long bytes) {
+        return bytes / (1024D * 1024D);
+    }
+
+    private void send(LoadClient client, long intendedTime) {
+        Packet packet = mix.next();
+        sent.increment();
+
+        if (!options.request) {
+            client.sendPacket(packet);
+            return;
+        }
+
+        long sendTime = System.nanoTime();
+
+        try {
+            client.awaitPacket(packet, (Packet response, Throwable cause) ->
+                    requestFinished(intendedTime, sendTime, cause), options.timeout);
+        } catch (IllegalStateException e) {
+            requestFinished(intendedTime, sendTime, e);
+        }
+    }
+
+    /**
+     * Blocks until the connection has done its round trip and is closed again,
+     * <br>the server has to accept it before it can answer
+     */
+    private void connectAndClose(LoadClient client, long intendedTime) {
+        sent.increment();
+
+        long sendTime = System.nanoTime();
+        Throwable cause = null;
+
+        try {
+            client.connectSynchronized();
+            client.getChannel().requestAsync(mix.next(), options.timeout).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            cause = e.getCause();
+        } catch (Exception e) {
+            cause = e;
+        }
+
+        requestFinished(intendedTime, sendTime, cause);
+
+        if (client.isConnected()) {
+            client.getChannel().closeSync();
+        }
+    }
+
+    private void requestFinished(long intendedTime, long sendTime, Throwable cause) {
+        long now = System.nanoTime();
+
+        if (cause == null) {
+            completed.increment();
+        }
+
+        if (intendedTime < measureStartTime) {
+            return;
+        }
+
+        if (cause == null) {
+            latency.record(now - intendedTime);
+            uncorrectedLatency.record(now - sendTime);
+        } else if (cause instanceof ReadTimeoutException) {
+            // an unanswered request waited at least this long, leaving it out would flatter the tail
+            latency.record(now - intendedTime);
+            timeouts.increment();
+        } else {
+            failures.increment();
+        }
+    }
+
+    /**
+     * Round-robins over its connections. With a rate, sends on the schedule of
+     * <br>{@code interval} and catches up in a burst when it falls behind;
+     * <br>an unwritable connection holds the schedule up, which is charged to latency.
+     * <br>Without a rate, sends whenever a connection is writable
+     * <br>and below {@link LoadOptions#window} requests in flight.
+     * <br>In connect mode it has a single client and connects it over and over
+     */
+    private final class Sender implements Runnable {
+
+        private final LoadClient[] clients;
+        private final double interval;
+
+        private Sender(LoadClient[] clients, double interval) {
+            this.clients = clients;
+            this.interval = interval;
+        }
+
+        @Override
+        public void run() {
+            if (options.connect) {
+                runConnects();
+            } else if (interval > 0) {
+                runScheduled();
+            } else {
+                runUnthrottled();
+            }
+        }
+
+        private void runScheduled() {
+            long startTime = System.nanoTime();
+            long sequence = 0;
+
+            while (running) {
+                long intendedTime = startTime + (long) (sequence * interval);
+                long now = System.nanoTime();
+
+                if (intendedTime > now) {
+                    LockSupport.parkNanos(intendedTime - now);
+                    continue;
+                }
+
+                LoadClient client = clients[(int) (sequence % clients.length)];
+
+                if (!client.isConnected() || !client.getChannel().isWritable()) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+                    continue;
+                }
+
+                send(client, intendedTime);
+                sequence++;
+            }
+        }
+
+        private void runConnects() {
+            long startTime = System.nanoTime();
+            long sequence = 0;
+
+            while (running) {
+                long intendedTime = interval > 0 ? startTime + (long) (sequence * interval) : System.nanoTime();
+                long now = System.nanoTime();
+
+                if (intendedTime > now) {
+                    LockSupport.parkNanos(intendedTime - now);
+                    continue;
+                }
+
+                connectAndClose(clients[0], intendedTime);
+                sequence++;
+            }
+        }
+
+        private void runUnthrottled() {
+            while (running) {
+                boolean sentAny = false;
+
+                for (LoadClient client : clients) {
+                    if (canSend(client)) {
+                        send(client, System.nanoTime());
+                        sentAny = true;
+                    }
+                }
+
+                if (!sentAny) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+                }
+            }
+        }
+
+        private boolean canSend(LoadClient client) {
+            if (!client.isConnected()) {
+                return false;
+            }
+
+            AbstractRemoteServerChannel channel = client.getChannel();
+            return channel.isWritable() && (!options.request || channel.getInFlightRequests() < options.window);
+        }
+    }
+
+    private final class LoadServer extends AbstractServerChannel {
+
+        private LoadServer() {
+            super("127.0.0.1", options.port, options.threads, options.transport);
+        }
+
+        @Override
+        protected AbstractRemoteClientChannel newClientChannel(SocketChannel channel) {
+            return new AbstractRemoteClientChannel(channel) {
+
+                @Override
+                public void process(Packet packet) {
+                    if (options.handlerSleep > 0) {
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(options.handlerSleep));
+                    }
+
+                    if (packet.hasRequestId()) {
+                        // thrown packets are sent back with the request id of the processed one
+                        throw packet;
+                    }
+
+                    completed.increment();
+                }
+            };
+        }
+    }
+
+    private final class LoadClient extends AbstractClientChannel {
+
+        private LoadClient(EventLoopResources eventLoopResources) {
+            super("127.0.0.1", options.port, eventLoopResources);
+        }
+
+        @Override
+        protected AbstractRemoteServerChannel newServerChannel(SocketChannel channel) {
+            return new AbstractRemoteServerChannel(this, channel) {
+
+                @Override
+                public void process(Throwable throwable) throws Exception {
+                    // fire mode writes still queued when the connection is closed at the end
+                    if (!(throwable instanceof ClosedChannelException)) {
+                        super.process(throwable);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void reconnect() {
+            // in connect mode connections are closed on purpose
+            if (!options.connect) {
+                super.reconnect();
+            }
+        }
+    }
+}
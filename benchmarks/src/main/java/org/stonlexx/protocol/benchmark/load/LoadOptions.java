@@ -0,0 +1,134 @@
+package org.stonlexx.protocol.benchmark.load;
+
+import org.stonlexx.protocol.lib.channel.Transport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line of {@link LoadGenerator}, every option is a {@code key=value} argument
+ */
+final class LoadOptions {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: LoadGenerator [key=value]...",
+            "  mode=request           request - awaitPacket() round trips, fire - sendPacket() without a response,",
+            "                         connect - connect, one round trip and close, over and over",
+            "  connections=8          client connections, in connect mode connect loops, each on its own thread",
+            "  rate=10000             packets (in connect mode connections) per second over all connections,",
+            "                         0 - as fast as possible",
+            "  window=128             requests in flight per connection when rate=0",
+            "  mix=small:80,medium:15,large:5   packet types and their weights",
+            "  payload=1024           payload of large packets in bytes",
+            "  warmup=5               seconds before the measurement",
+            "  duration=30            measured seconds",
+            "  timeout=5000           request timeout in milliseconds",
+            "  senders=<cores>        threads generating the load",
+            "  threads=2              event loop threads of the server and of the clients",
+            "  acceptors=1            server sockets bound to the port with SO_REUSEPORT, epoll only",
+            "  transport=<best>       io_uring, epoll or nio",
+            "  flushConsolidation=0   flushes merged by FlushConsolidationHandler, 0 - off",
+            "  detailedMetrics=false  per-type and per-connection metrics",
+            "  packetExecutor=inline  where the server processes packets: inline, striped[:threads]",
+            "                         or virtual (Java 21 with the virtual-threads module on the classpath)",
+            "  handlerSleep=0         microseconds the server handler blocks for on every packet",
+            "  port=19200");
+
+    final String mode;
+    final boolean request;
+    final boolean connect;
+    final int connections;
+    final int rate;
+    final int window;
+    final String mix;
+    final int payload;
+    final int warmup;
+    final int duration;
+    final long timeout;
+    final int senders;
+    final int threads;
+    final int acceptors;
+    final Transport transport;
+    final int flushConsolidation;
+    final boolean detailedMetrics;
+    final String packetExecutor;
+    final long handlerSleep;
+    final int port;
+
+    private LoadOptions(Map<String, String> options) {
+        mode = take(options, "mode", "request");
+
+        if (!mode.equals("request") && !mode.equals("fire") && !mode.equals("connect")) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+
+        request = !mode.equals("fire");
+        connect = mode.equals("connect");
+        connections = positive(options, "connections", 8);
+        rate = Integer.parseInt(take(options, "rate", "10000"));
+        window = positive(options, "window", 128);
+        mix = take(options, "mix", "small:80,medium:15,large:5");
+        payload = Integer.parseInt(take(options, "payload", "1024"));
+        warmup = Integer.parseInt(take(options, "warmup", "5"));
+        duration = positive(options, "duration", 30);
+        timeout = Long.parseLong(take(options, "timeout", "5000"));
+        int senders = positive(options, "senders", Runtime.getRuntime().availableProcessors());
+
+        // a connect loop blocks its thread for the whole handshake
+        this.senders = connect ? connections : Math.min(connections, senders);
+        threads = positive(options, "threads", 2);
+        acceptors = positive(options, "acceptors", 1);
+        transport = Transport.valueOf(take(options, "transport", Transport.best().name()).toUpperCase()).orFallback();
+        flushConsolidation = Integer.parseInt(take(options, "flushConsolidation", "0"));
+        detailedMetrics = Boolean.parseBoolean(take(options, "detailedMetrics", "false"));
+        packetExecutor = take(options, "packetExecutor", "inline");
+        handlerSleep = Long.parseLong(take(options, "handlerSleep", "0"));
+        port = positive(options, "port", 19200);
+
+        if (rate < 0 || payload < 0 || warmup < 0 || handlerSleep < 0) {
+            throw new IllegalArgumentException("rate, payload, warmup and handlerSleep must not be negative");
+        }
+
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + options.keySet());
+        }
+    }
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        return new LoadOptions(options);
+    }
+
+    private static String take(Map<String, String> options, String key, String defaultValue) {
+        String value = options.remove(key);
+        return value == null ? defaultValue : value;
+    }
+
+    private static int positive(Map<String, String> options, String key, int defaultValue) {
+        int value = Integer.parseInt(take(options, key, String.valueOf(defaultValue)));
+
+        if (value <= 0) {
+            throw new IllegalArgumentException(key + " must be positive");
+        }
+
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("mode=%s, connections=%s, rate=%s, mix=%s, payload=%s, senders=%s, threads=%s, acceptors=%s, transport=%s, packetExecutor=%s, handlerSleep=%sus",
+                mode, connections, rate == 0 ? "max" : rate + "/s",
+                mix, payload, senders, threads, acceptors, transport, packetExecutor, handlerSleep);
+    }
+}
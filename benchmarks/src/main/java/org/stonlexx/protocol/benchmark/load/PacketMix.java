@@ -0,0 +1,92 @@
+package org.stonlexx.protocol.benchmark.load;
+
+import org.stonlexx.protocol.benchmark.BenchmarkPackets;
+import org.stonlexx.protocol.lib.packet.Packet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Weighted random choice of {@link BenchmarkPackets}, parsed from {@code small:80,medium:15,large:5}
+ */
+final class PacketMix {
+
+    private final Supplier<Packet>[] factories;
+    private final int[] cumulativeWeights;
+
+    private final int totalWeight;
+
+    PacketMix(String mix, int payloadSize) {
+        byte[] payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+
+        List<Supplier<Packet>> factories = new ArrayList<>();
+        List<Integer> cumulativeWeights = new ArrayList<>();
+
+        int totalWeight = 0;
+
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+
+            if (weight <= 0) {
+                continue;
+            }
+
+            factories.add(factory(parts[0], payload));
+
+            totalWeight += weight;
+            cumulativeWeights.add(totalWeight);
+        }
+
+        if (factories.isEmpty()) {
+            throw new IllegalArgumentException("Empty packet mix: " + mix);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Supplier<Packet>[] factoryArray = factories.toArray(new Supplier[0]);
+
+        this.factories = factoryArray;
+        this.cumulativeWeights = cumulativeWeights.stream().mapToInt(Integer::intValue).toArray();
+        this.totalWeight = totalWeight;
+    }
+
+    private static Supplier<Packet> factory(String type, byte[] payload) {
+        switch (type) {
+            case "small":
+                return () -> new BenchmarkPackets.SmallPacket(ThreadLocalRandom.current().nextInt());
+
+            case "medium":
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    return new BenchmarkPackets.MediumPacket(random.nextLong(),
+                            random.nextInt(100_000), random.nextInt(256), random.nextInt(100_000), "load-generator");
+                };
+
+            case "large":
+                // packets are never modified after being written, the payload can be shared
+                return () -> new BenchmarkPackets.LargePacket(payload);
+
+            default:
+                throw new IllegalArgumentException("Unknown packet type: " + type + ", expected small, medium or large");
+        }
+    }
+
+    Packet next() {
+        if (factories.length == 1) {
+            return factories[0].get();
+        }
+
+        int value = ThreadLocalRandom.current().nextInt(totalWeight);
+
+        for (int i = 0; i < factories.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return factories[i].get();
+            }
+        }
+
+        throw new IllegalStateException();
+    }
+}
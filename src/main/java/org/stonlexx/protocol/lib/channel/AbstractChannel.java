@@ -2,22 +2,35 @@ package org.stonlexx.protocol.lib.channel;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.epoll.Epoll;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.traffic.GlobalChannelTrafficShapingHandler;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import lombok.Getter;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.stonlexx.protocol.lib.packet.Packet;
 import org.stonlexx.protocol.lib.packet.PacketDirection;
 import org.stonlexx.protocol.lib.packet.PacketProcessor;
+import org.stonlexx.protocol.lib.pipeline.OverflowPolicy;
+import org.stonlexx.protocol.lib.pipeline.PacketExecutor;
 import org.stonlexx.protocol.lib.pipeline.Pipeline;
 
+import javax.annotation.Nullable;
 import java.net.InetSocketAddress;
 import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
 
 @Getter
 @RequiredArgsConstructor
 public abstract class AbstractChannel {
 
-    protected static final boolean epoll = Epoll.isAvailable();
+    /**
+     * @deprecated use {@link #getTransport()}
+     */
+    @Deprecated
+    protected static final boolean epoll = Transport.EPOLL.isAvailable();
 
     protected static final ThreadFactory threadFactory = new ThreadFactoryBuilder()
             .setNameFormat("[Netty] EventLoopGroup #%s")
@@ -28,6 +41,45 @@ public abstract class AbstractChannel {
     protected final InetSocketAddress socketAddress;
     protected final int threads;
 
+    /**
+     * Null - {@link Transport#best()}
+     */
+    protected Transport transport;
+    protected EventLoopResources eventLoopResources;
+
+    /**
+     * Whether the event loops were created by this channel
+     * <br>and are shut down together with it
+     */
+    protected boolean ownsEventLoops;
+
+    /**
+     * Max flushes merged into one syscall, 0 - disabled
+     */
+    protected int flushConsolidation;
+
+    /**
+     * Null - Netty defaults
+     */
+    protected WriteBufferWaterMark writeBufferWaterMark;
+
+    /**
+     * Max packets held while a connection is unwritable, 0 - disabled
+     */
+    protected int outboundQueueCapacity;
+    protected OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    protected Predicate<Packet> droppablePackets = packet -> false;
+
+    /**
+     * Null - all packets are processed on the event loop
+     */
+    protected PacketExecutor packetExecutor;
+
+    /**
+     * Shared by all connections of this channel, null - no limits
+     */
+    protected GlobalChannelTrafficShapingHandler trafficShaping;
+
     public AbstractChannel(String host, int port, int threads) {
         this(new InetSocketAddress(host, port), threads);
     }
@@ -46,9 +98,108 @@ public abstract class AbstractChannel {
     public abstract PacketDirection getInboundPacketDirection();
 
     public boolean isEpoll() {
-        return epoll;
+        return transport == Transport.EPOLL;
+    }
+
+    /**
+     * Merges flushes issued within one event loop tick,
+     * <br>or up to {@code explicitFlushAfterFlushes} of them
+     * <br>while a read is in progress. Applies to new connections
+     */
+    public void enableFlushConsolidation(int explicitFlushAfterFlushes) {
+        if (explicitFlushAfterFlushes <= 0) {
+            throw new IllegalArgumentException("explicitFlushAfterFlushes must be positive");
+        }
+
+        flushConsolidation = explicitFlushAfterFlushes;
+    }
+
+    public void disableFlushConsolidation() {
+        flushConsolidation = 0;
+    }
+
+    /**
+     * A connection becomes unwritable once more than {@code high} bytes
+     * <br>are pending, and writable again below {@code low}.
+     * <br>Applies to new connections
+     */
+    public void setWriteBufferWaterMark(int low, int high) {
+        writeBufferWaterMark = new WriteBufferWaterMark(low, high);
+    }
+
+    /**
+     * Holds up to {@code capacity} packets per connection while it is unwritable,
+     * <br>what happens after that is decided by the {@code policy}.
+     * <br>Applies to new connections
+     */
+    public void setOutboundQueue(int capacity, @NonNull OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        outboundQueueCapacity = capacity;
+        overflowPolicy = policy;
+    }
+
+    public void disableOutboundQueue() {
+        outboundQueueCapacity = 0;
+    }
+
+    /**
+     * Packets that {@link OverflowPolicy#DROP_MATCHING} may drop
+     */
+    public void setDroppablePackets(@NonNull Predicate<Packet> droppablePackets) {
+        this.droppablePackets = droppablePackets;
+    }
+
+    /**
+     * Packets with {@link Packet#isOffloaded()} are processed on this executor.
+     * <br>Applies to new connections
+     */
+    public void setPacketExecutor(@Nullable PacketExecutor packetExecutor) {
+        this.packetExecutor = packetExecutor;
+    }
+
+    /**
+     * Caps bandwidth in bytes per second, 0 - unlimited.
+     * <br>Global limits are shared by all connections of this channel,
+     * <br>channel limits apply to each connection on its own.
+     * <br>Reading is throttled by turning autoRead off, writing by delaying writes.
+     * <br>Applies to new connections
+     */
+    public void setTrafficShaping(long globalWriteLimit, long globalReadLimit,
+                                  long channelWriteLimit, long channelReadLimit) {
+        disableTrafficShaping();
+
+        trafficShaping = new GlobalChannelTrafficShapingHandler(eventLoopResources.getWorker(),
+                globalWriteLimit, globalReadLimit, channelWriteLimit, channelReadLimit);
+    }
+
+    public void disableTrafficShaping() {
+        if (trafficShaping != null) {
+            trafficShaping.release();
+            trafficShaping = null;
+        }
+    }
+
+    /**
+     * Closes the connection and shuts down the event loops
+     * <br>if this channel created them
+     */
+    public Future<?> shutdown() {
+        closeConnection();
+        disableTrafficShaping();
+
+        if (eventLoopResources == null || !ownsEventLoops) {
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+
+        ownsEventLoops = false;
+        return eventLoopResources.shutdownGracefully();
     }
 
+    public abstract void closeConnection();
+
     protected void initPipeline(SocketChannel channel) {
         Pipeline.initPipeline(this, channel);
     }
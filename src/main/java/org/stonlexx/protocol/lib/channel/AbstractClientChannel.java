@@ -5,22 +5,28 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.Future;
 import lombok.Getter;
 import lombok.NonNull;
 import org.stonlexx.protocol.lib.exception.ConnectException;
 import org.stonlexx.protocol.lib.packet.PacketDirection;
 import org.stonlexx.protocol.lib.packet.PacketProcessor;
+import org.stonlexx.protocol.lib.pipeline.OutboundJournal;
 import org.stonlexx.protocol.lib.response.FullResponseHandler;
 import org.stonlexx.protocol.lib.response.ResponseHandler;
 
 import javax.annotation.Nullable;
 import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 @Getter
@@ -35,12 +41,34 @@ public abstract class AbstractClientChannel extends AbstractChannel {
     private ChannelFuture future;
     private AbstractRemoteServerChannel channel;
 
+    /**
+     * Null - packets sent while disconnected are dropped
+     */
+    protected OutboundJournal outboundJournal;
+
     public AbstractClientChannel(String host, int port, int threads) {
         super(host, port, threads);
 
         init();
     }
 
+    /**
+     * Falls back to the best available transport if {@code transport} is not available
+     */
+    public AbstractClientChannel(String host, int port, int threads, @NonNull Transport transport) {
+        super(host, port, threads);
+
+        this.transport = transport;
+        init();
+    }
+
+    public AbstractClientChannel(String host, int port, @NonNull EventLoopResources eventLoopResources) {
+        super(host, port, 0);
+
+        this.eventLoopResources = eventLoopResources;
+        init();
+    }
+
     protected void checkConnectAvailability() throws ConnectException {
         if (isConnected()) {
             throw new ConnectException(this, new AlreadyConnectedException());
@@ -55,32 +83,133 @@ public abstract class AbstractClientChannel extends AbstractChannel {
         connectAsynchronous(errorHandler, null);
     }
 
-    protected boolean reconnecting;
+    protected ReconnectPolicy reconnectPolicy = ReconnectPolicy.DEFAULT;
+
+    /**
+     * Set by the first caller of {@link #reconnect()}, cleared once connected
+     */
+    protected final AtomicBoolean reconnecting = new AtomicBoolean();
+
+    /**
+     * Attempts made since the last successful connect
+     */
+    protected final AtomicInteger reconnectAttempt = new AtomicInteger();
+
+    private final LongAdder reconnectAttempts = new LongAdder();
+    private final LongAdder failedReconnects = new LongAdder();
+    private final LongAdder successfulReconnects = new LongAdder();
+
+    /**
+     * Set by {@link #shutdown()}, the event loops may be shared and keep running
+     */
+    private volatile boolean closed;
+
+    public void setReconnectPolicy(@NonNull ReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
+    public boolean isReconnecting() {
+        return reconnecting.get();
+    }
 
     public void reconnect() {
-        if (reconnecting) {
+        if (closed || worker.isShuttingDown() || !reconnecting.compareAndSet(false, true)) {
             return;
         }
 
-        reconnecting = true;
         scheduleReconnect();
     }
 
     protected void scheduleReconnect() {
-        System.out.println("Reconnecting in 5 seconds...");
-        worker.schedule(this::doReconnect, 5, TimeUnit.SECONDS);
+        if (closed || worker.isShuttingDown()) {
+            reconnecting.set(false);
+            return;
+        }
+
+        long delay = reconnectPolicy.nextDelayMillis(reconnectAttempt.getAndIncrement());
+
+        onReconnectScheduled(delay);
+        worker.schedule(this::doReconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called before every reconnect attempt is scheduled
+     */
+    protected void onReconnectScheduled(long delayMillis) {
+        // override me
+    }
+
+    /**
+     * Called for every failed reconnect attempt, the next one is scheduled right after
+     */
+    protected void onReconnectFailed(ConnectException cause) {
+        // override me
     }
 
     protected void doReconnect() {
-        try {
-            connectSynchronized();
+        if (closed) {
+            reconnecting.set(false);
+            return;
+        }
 
-            reconnecting = false;
-        } catch (Exception e) {
-            System.out.println("Unable to reconnect: " + e);
+        if (isConnected()) {
+            finishReconnect();
+            return;
+        }
 
+        ReconnectPolicy policy = reconnectPolicy;
+
+        if (!policy.tryAcquireAttempt()) {
             scheduleReconnect();
+            return;
         }
+
+        reconnectAttempts.increment();
+
+        connectAsynchronous(e -> {
+            policy.releaseAttempt();
+            failedReconnects.increment();
+
+            onReconnectFailed(e);
+            scheduleReconnect();
+        }, () -> {
+            policy.releaseAttempt();
+            successfulReconnects.increment();
+
+            finishReconnect();
+        });
+    }
+
+    private void finishReconnect() {
+        reconnectAttempt.set(0);
+        reconnecting.set(false);
+
+        // the connection may have dropped before the flag was cleared
+        if (!isConnected()) {
+            reconnect();
+        }
+    }
+
+    /**
+     * Stops reconnecting for good, even on event loops this client does not own
+     */
+    @Override
+    public Future<?> shutdown() {
+        closed = true;
+
+        return super.shutdown();
+    }
+
+    public long getReconnectAttempts() {
+        return reconnectAttempts.sum();
+    }
+
+    public long getFailedReconnects() {
+        return failedReconnects.sum();
+    }
+
+    public long getSuccessfulReconnects() {
+        return successfulReconnects.sum();
     }
 
     public void connectAsynchronous(@Nullable Runnable success) {
@@ -104,7 +233,7 @@ public abstract class AbstractClientChannel extends AbstractChannel {
         try {
             checkConnectAvailability();
 
-            future = bootstrap.connect();
+            future = connect();
 
             future.addListener(future -> {
                 if (future.isSuccess()) {
@@ -126,7 +255,7 @@ public abstract class AbstractClientChannel extends AbstractChannel {
         checkConnectAvailability();
 
         try {
-            future = bootstrap.connect().sync();
+            future = connect().sync();
 
             if (!future.isSuccess()) {
                 throw future.cause();
@@ -138,6 +267,40 @@ public abstract class AbstractClientChannel extends AbstractChannel {
         }
     }
 
+    protected ChannelFuture connect() {
+        ChannelFuture future = bootstrap.connect();
+
+        future.addListener((ChannelFuture connectFuture) -> {
+            // read on completion, the journal may be set while connecting
+            OutboundJournal outboundJournal = this.outboundJournal;
+
+            if (outboundJournal != null && connectFuture.isSuccess()) {
+                outboundJournal.replay(connectFuture.channel());
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Packets sent while disconnected are kept in the journal
+     * <br>and written to the next connection before anything else
+     */
+    public void setOutboundJournal(@Nullable OutboundJournal outboundJournal) {
+        this.outboundJournal = outboundJournal;
+
+        // an already open connection is only known to the journal after a replay
+        if (outboundJournal != null && isConnected()) {
+            SocketChannel socketChannel = channel.channel;
+            socketChannel.eventLoop().execute(() -> outboundJournal.replay(socketChannel));
+        }
+    }
+
+    private boolean journal(Packet packet) {
+        OutboundJournal outboundJournal = this.outboundJournal;
+        return outboundJournal != null && outboundJournal.appendIfOffline(packet);
+    }
+
     protected void closeChannel() {
         channel.close();
     }
@@ -147,6 +310,7 @@ public abstract class AbstractClientChannel extends AbstractChannel {
         future = null;
     }
 
+    @Override
     public void closeConnection() {
         if (isConnected()) {
             closeChannel();
@@ -167,8 +331,8 @@ public abstract class AbstractClientChannel extends AbstractChannel {
     protected void init() {
         super.init();
 
-        initChannelClass();
         initEventLoopGroups();
+        initChannelClass();
         initBootstrap();
     }
 
@@ -178,13 +342,18 @@ public abstract class AbstractClientChannel extends AbstractChannel {
     }
 
     protected void initChannelClass() {
-        channelClass = epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+        channelClass = transport.getSocketChannelClass();
     }
 
     protected void initEventLoopGroups() {
-        worker = epoll
-                ? new EpollEventLoopGroup(threads, threadFactory)
-                : new NioEventLoopGroup(threads, threadFactory);
+        if (eventLoopResources == null) {
+            eventLoopResources = EventLoopResources.create(transport == null ? Transport.best() : transport, threads);
+            ownsEventLoops = true;
+        }
+
+        transport = eventLoopResources.getTransport();
+
+        worker = eventLoopResources.getWorker();
     }
 
     protected void initBootstrap() {
@@ -197,11 +366,61 @@ public abstract class AbstractClientChannel extends AbstractChannel {
     }
 
     public void sendPacket(Packet packet) {
+        if (journal(packet)) {
+            return;
+        }
+
         if (isConnected()) {
             channel.sendPacket(packet);
         }
     }
 
+    public void sendPackets(@NonNull Collection<? extends Packet> packets) {
+        if (outboundJournal != null && !outboundJournal.isOnline()) {
+            packets.forEach(this::sendPacket);
+            return;
+        }
+
+        if (isConnected()) {
+            channel.sendPackets(packets);
+        }
+    }
+
+    public void write(@NonNull Packet packet) {
+        if (journal(packet)) {
+            return;
+        }
+
+        if (isConnected()) {
+            channel.write(packet);
+        }
+    }
+
+    public void flush() {
+        if (isConnected()) {
+            channel.flush();
+        }
+    }
+
+
+    public <T extends Packet> CompletionStage<T> requestAsync(@NonNull Packet packet) {
+        return requestAsync(packet, AbstractRemoteChannel.DEFAULT_TIMEOUT);
+    }
+
+    public <T extends Packet> CompletionStage<T> requestAsync(@NonNull Packet packet, long timeout) {
+        return requestAsync(packet, timeout, null);
+    }
+
+    public <T extends Packet> CompletionStage<T> requestAsync(@NonNull Packet packet, long timeout, @Nullable Executor executor) {
+        if (!isConnected()) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new ClosedChannelException());
+
+            return future;
+        }
+
+        return channel.requestAsync(packet, timeout, executor);
+    }
 
     public <T extends Packet> T awaitPacket(@NonNull Packet packet) {
         return channel.awaitPacket(packet);
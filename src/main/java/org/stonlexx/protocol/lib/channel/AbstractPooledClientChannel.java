@@ -0,0 +1,337 @@
+package org.stonlexx.protocol.lib.channel;
+
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.stonlexx.protocol.lib.packet.Packet;
+import org.stonlexx.protocol.lib.response.FullResponseHandler;
+
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps {@code connectionsPerEndpoint} connections to every endpoint
+ * <br>and spreads packets and requests between them.
+ * <br>A member that disconnects is reconnected in the background
+ * <br>and skipped until it is connected again.
+ * <br>Members are created by the first {@link #connect()}, after the subclass is constructed
+ */
+@Getter
+public abstract class AbstractPooledClientChannel {
+
+    private final List<InetSocketAddress> endpoints;
+    private final int connectionsPerEndpoint;
+
+    private final EventLoopResources eventLoopResources;
+    private final boolean ownsEventLoops;
+
+    private volatile List<AbstractClientChannel> members = Collections.emptyList();
+
+    protected BalancingStrategy strategy = BalancingStrategy.ROUND_ROBIN;
+
+    /**
+     * Null - members keep {@link ReconnectPolicy#DEFAULT}
+     */
+    private ReconnectPolicy reconnectPolicy;
+
+    private final AtomicInteger nextMember = new AtomicInteger();
+
+    public AbstractPooledClientChannel(@NonNull List<InetSocketAddress> endpoints, int connectionsPerEndpoint, int threads) {
+        this(endpoints, connectionsPerEndpoint, EventLoopResources.create(threads), true);
+    }
+
+    public AbstractPooledClientChannel(@NonNull List<InetSocketAddress> endpoints, int connectionsPerEndpoint,
+                                       @NonNull EventLoopResources eventLoopResources) {
+        this(endpoints, connectionsPerEndpoint, eventLoopResources, false);
+    }
+
+    private AbstractPooledClientChannel(List<InetSocketAddress> endpoints, int connectionsPerEndpoint,
+                                        EventLoopResources eventLoopResources, boolean ownsEventLoops) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("endpoints must not be empty");
+        }
+
+        if (connectionsPerEndpoint <= 0) {
+            throw new IllegalArgumentException("connectionsPerEndpoint must be positive");
+        }
+
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        this.connectionsPerEndpoint = connectionsPerEndpoint;
+        this.eventLoopResources = eventLoopResources;
+        this.ownsEventLoops = ownsEventLoops;
+    }
+
+    private List<AbstractClientChannel> createMembers() {
+        List<AbstractClientChannel> members = new ArrayList<>(endpoints.size() * connectionsPerEndpoint);
+
+        for (int i = 0; i < connectionsPerEndpoint; i++) {
+            for (InetSocketAddress endpoint : endpoints) {
+                AbstractClientChannel member = newMember(endpoint);
+
+                if (reconnectPolicy != null) {
+                    member.setReconnectPolicy(reconnectPolicy);
+                }
+
+                initMember(member);
+                members.add(member);
+            }
+        }
+
+        return Collections.unmodifiableList(members);
+    }
+
+    protected abstract AbstractRemoteServerChannel newServerChannel(AbstractClientChannel member, SocketChannel channel);
+
+    /**
+     * Called once for every member before it connects,
+     * <br>pipeline options like the outbound queue are set here
+     */
+    protected void initMember(AbstractClientChannel member) {
+        // override me
+    }
+
+    protected AbstractClientChannel newMember(InetSocketAddress endpoint) {
+        return new AbstractClientChannel(endpoint.getHostString(), endpoint.getPort(), eventLoopResources) {
+
+            @Override
+            protected AbstractRemoteServerChannel newServerChannel(SocketChannel channel) {
+                return AbstractPooledClientChannel.this.newServerChannel(this, channel);
+            }
+        };
+    }
+
+    public void setStrategy(@NonNull BalancingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Members share the policy, and with it its limit on connection attempts in flight
+     */
+    public synchronized void setReconnectPolicy(@NonNull ReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+
+        for (AbstractClientChannel member : members) {
+            member.setReconnectPolicy(reconnectPolicy);
+        }
+    }
+
+    /**
+     * Starts connecting every member, the ones that fail keep retrying in the background
+     */
+    public synchronized void connect() {
+        if (members.isEmpty()) {
+            members = createMembers();
+        }
+
+        for (AbstractClientChannel member : members) {
+            member.connectAsynchronous(e -> member.reconnect());
+        }
+    }
+
+    public int getConnectedMembers() {
+        int connected = 0;
+
+        for (AbstractClientChannel member : members) {
+            if (member.isConnected()) {
+                connected++;
+            }
+        }
+
+        return connected;
+    }
+
+    public boolean isConnected() {
+        return select() != null;
+    }
+
+    /**
+     * @return null if no member is connected
+     */
+    @Nullable
+    protected AbstractRemoteServerChannel select() {
+        List<AbstractClientChannel> members = this.members;
+        int size = members.size();
+
+        if (size == 0) {
+            return null;
+        }
+
+        int start = Math.floorMod(nextMember.getAndIncrement(), size);
+
+        if (strategy == BalancingStrategy.LEAST_IN_FLIGHT) {
+            AbstractRemoteServerChannel best = null;
+
+            for (int i = 0; i < size; i++) {
+                AbstractRemoteServerChannel channel = connectedChannel(members.get((start + i) % size));
+
+                if (channel != null && (best == null || channel.getInFlightRequests() < best.getInFlightRequests())) {
+                    best = channel;
+                }
+            }
+
+            return best;
+        }
+
+        return probe(members, start);
+    }
+
+    /**
+     * The same key goes through the same connection as long as it stays connected
+     *
+     * @return null if no member is connected
+     */
+    @Nullable
+    protected AbstractRemoteServerChannel select(@NonNull Object key) {
+        List<AbstractClientChannel> members = this.members;
+
+        if (members.isEmpty()) {
+            return null;
+        }
+
+        return probe(members, Math.floorMod(key.hashCode(), members.size()));
+    }
+
+    private AbstractRemoteServerChannel probe(List<AbstractClientChannel> members, int start) {
+        int size = members.size();
+
+        for (int i = 0; i < size; i++) {
+            AbstractRemoteServerChannel channel = connectedChannel(members.get((start + i) % size));
+
+            if (channel != null) {
+                return channel;
+            }
+        }
+
+        return null;
+    }
+
+    private AbstractRemoteServerChannel connectedChannel(AbstractClientChannel member) {
+        AbstractRemoteServerChannel channel = member.getChannel();
+
+        return channel != null && channel.isActive() ? channel : null;
+    }
+
+    private AbstractRemoteServerChannel selectConnected(@Nullable Object key) {
+        AbstractRemoteServerChannel channel = key == null ? select() : select(key);
+
+        if (channel == null) {
+            throw new IllegalStateException("No connected members");
+        }
+
+        return channel;
+    }
+
+    public void sendPacket(@NonNull Packet packet) {
+        AbstractRemoteServerChannel channel = select();
+
+        if (channel != null) {
+            channel.sendPacket(packet);
+        }
+    }
+
+    public void sendPacket(@NonNull Object key, @NonNull Packet packet) {
+        AbstractRemoteServerChannel channel = select(key);
+
+        if (channel != null) {
+            channel.sendPacket(packet);
+        }
+    }
+
+    /**
+     * All packets go through one connection, so their order is kept
+     */
+    public void sendPackets(@NonNull Collection<? extends Packet> packets) {
+        AbstractRemoteServerChannel channel = select();
+
+        if (channel != null) {
+            channel.sendPackets(packets);
+        }
+    }
+
+    public void sendPackets(@NonNull Object key, @NonNull Collection<? extends Packet> packets) {
+        AbstractRemoteServerChannel channel = select(key);
+
+        if (channel != null) {
+            channel.sendPackets(packets);
+        }
+    }
+
+    public <T extends Packet> CompletionStage<T> requestAsync(@NonNull Packet packet) {
+        return requestAsync(null, packet, AbstractRemoteChannel.DEFAULT_TIMEOUT, null);
+    }
+
+    public <T extends Packet> CompletionStage<T> requestAsync(@NonNull Packet packet, long timeout) {
+        return requestAsync(null, packet, timeout, null);
+    }
+
+    /**
+     * @param key null - picked by the {@link #getStrategy()}
+     */
+    public <T extends Packet> CompletionStage<T> requestAsync(@Nullable Object key, @NonNull Packet packet,
+                                                            long timeout, @Nullable Executor executor) {
+        AbstractRemoteServerChannel channel = key == null ? select() : select(key);
+
+        if (channel == null) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new ClosedChannelException());
+
+            return future;
+        }
+
+        return channel.requestAsync(packet, timeout, executor);
+    }
+
+    public <T extends Packet> T awaitPacket(@NonNull Packet packet) {
+        return selectConnected(null).awaitPacket(packet);
+    }
+
+    public <T extends Packet> T awaitPacket(@NonNull Packet packet, long timeout) {
+        return selectConnected(null).awaitPacket(packet, timeout);
+    }
+
+    public <T extends Packet> T awaitPacket(@NonNull Object key, @NonNull Packet packet, long timeout) {
+        return selectConnected(key).awaitPacket(packet, timeout);
+    }
+
+    public <T extends Packet> void awaitPacket(@NonNull Packet packet, @NonNull FullResponseHandler<T> handler) {
+        selectConnected(null).awaitPacket(packet, handler);
+    }
+
+    public <T extends Packet> void awaitPacket(@NonNull Packet packet, @NonNull FullResponseHandler<T> handler, long timeout) {
+        selectConnected(null).awaitPacket(packet, handler, timeout);
+    }
+
+    public <T extends Packet> void awaitPacket(@NonNull Object key, @NonNull Packet packet,
+                                               @NonNull FullResponseHandler<T> handler, long timeout) {
+        selectConnected(key).awaitPacket(packet, handler, timeout);
+    }
+
+    /**
+     * Closes every member without reconnecting and shuts down
+     * <br>the event loops if this pool created them
+     */
+    public Future<?> shutdown() {
+        for (AbstractClientChannel member : members) {
+            // members never own the event loops, this only closes them
+            member.shutdown();
+        }
+
+        if (!ownsEventLoops) {
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+
+        return eventLoopResources.shutdownGracefully();
+    }
+
+}
@@ -1,27 +1,40 @@
 package org.stonlexx.protocol.lib.channel;
 
+import org.stonlexx.protocol.lib.metrics.ConnectionMetrics;
+import org.stonlexx.protocol.lib.metrics.PacketTypeMetrics;
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
 import org.stonlexx.protocol.lib.packet.Packet;
 import org.stonlexx.protocol.lib.packet.PacketProcessor;
 import org.stonlexx.protocol.lib.pipeline.PacketDecoder;
+import org.stonlexx.protocol.lib.pipeline.OutboundQueue;
 import org.stonlexx.protocol.lib.pipeline.PacketEncoder;
+import org.stonlexx.protocol.lib.pipeline.Pipeline;
 import org.stonlexx.protocol.lib.response.FullResponseHandler;
-import gnu.trove.TCollections;
+import org.stonlexx.protocol.lib.response.PendingRequest;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
+import io.netty.channel.EventLoop;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.util.HashedWheelTimer;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.stonlexx.protocol.lib.packet.PacketProtocol;
 import org.stonlexx.protocol.lib.response.ResponseHandler;
 
+import javax.annotation.Nullable;
 import java.nio.channels.ClosedChannelException;
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
 
 @SuppressWarnings({"unchecked", "rawtypes"})
@@ -30,30 +43,41 @@ public abstract class AbstractRemoteChannel implements PacketProcessor {
 
     public static final long DEFAULT_TIMEOUT = 5000;
 
+    /**
+     * Shared by all channels: a timeout costs O(1) to add and to cancel,
+     * <br>and nothing is left in the event loop task queue after a response
+     */
+    protected static final HashedWheelTimer TIMEOUT_TIMER = new HashedWheelTimer(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("[Netty] Request Timeout Timer")
+                    .setDaemon(true)
+                    .build(),
+            10, TimeUnit.MILLISECONDS, 512);
+
     protected final SocketChannel channel;
 
-    protected AtomicInteger requestIdCounter;
-    protected TIntObjectMap<FullResponseHandler> responseHandlers;
+    protected final AtomicInteger requestIdCounter = new AtomicInteger();
 
-    protected int nextRequestId() {
-        if (requestIdCounter == null) {
-            requestIdCounter = new AtomicInteger();
-        }
+    /**
+     * Pending requests, touched only from the channel event loop
+     */
+    protected TIntObjectMap<PendingRequest> responseHandlers;
 
-        int requestId = requestIdCounter.get();
-
-        if (requestId == Integer.MAX_VALUE) {
-            requestIdCounter.set(0);
-        } else {
-            requestIdCounter.set(requestId + 1);
-        }
+    /**
+     * Requests sent and not yet answered, readable from any thread
+     */
+    protected final AtomicInteger inFlightRequests = new AtomicInteger();
 
-        return requestId;
+    protected int nextRequestId() {
+        return requestIdCounter.getAndIncrement() & Integer.MAX_VALUE;
     }
 
     @Getter
     private PacketProtocol protocol;
 
+    private OutboundQueue outboundQueue;
+    private boolean outboundQueueResolved;
+
     public void upgradeConnection(PacketProtocol protocol) {
         if (isActive()) {
             channel.pipeline().get(PacketEncoder.class).upgradeConnection(protocol);
@@ -63,27 +87,77 @@ public abstract class AbstractRemoteChannel implements PacketProcessor {
         }
     }
 
-    protected <T extends Packet> void addResponseHandler(int requestId, @NonNull FullResponseHandler<T> handler) {
+    protected <T extends Packet> PendingRequest addResponseHandler(int requestId, @NonNull FullResponseHandler<T> handler) {
+        return addResponseHandler(requestId, null, handler);
+    }
+
+    protected <T extends Packet> PendingRequest addResponseHandler(int requestId, @Nullable Class<? extends Packet> requestClass,
+                                                                   @NonNull FullResponseHandler<T> handler) {
         if (responseHandlers == null) {
-            responseHandlers = TCollections.synchronizedMap(new TIntObjectHashMap<>());
+            responseHandlers = new TIntObjectHashMap<>();
         }
 
-        responseHandlers.put(requestId, handler);
+        PendingRequest request = new PendingRequest(handler, requestClass);
+        responseHandlers.put(requestId, request);
+
+        return request;
     }
 
     protected FullResponseHandler<?> removeResponseHandler(int requestId) {
-        return responseHandlers == null ? null : responseHandlers.remove(requestId);
+        PendingRequest request = removePendingRequest(requestId);
+        return request == null ? null : request.getHandler();
+    }
+
+    private PendingRequest removePendingRequest(int requestId) {
+        PendingRequest request = responseHandlers == null ? null : responseHandlers.remove(requestId);
+
+        if (request == null) {
+            return null;
+        }
+
+        request.cancelTimeout();
+        requestsFinished(1);
+
+        return request;
+    }
+
+    protected void expireRequest(int requestId, @NonNull PendingRequest request) {
+        EventLoop eventLoop = channel.eventLoop();
+
+        if (!eventLoop.inEventLoop()) {
+            if (!eventLoop.isShuttingDown()) {
+                eventLoop.execute(() -> expireRequest(requestId, request));
+            }
+
+            return;
+        }
+
+        if (responseHandlers == null || responseHandlers.get(requestId) != request) {
+            return;
+        }
+
+        responseHandlers.remove(requestId);
+        requestsFinished(1);
+
+        requestTimedOut(request);
+        request.getHandler().handleResponse(null, ReadTimeoutException.INSTANCE);
     }
 
     protected void handlePacket(@NonNull Packet packet) {
         if (packet.hasRequestId()) {
-            FullResponseHandler handler = removeResponseHandler(packet.getRequestId());
+            if (!channel.eventLoop().inEventLoop()) {
+                channel.eventLoop().execute(() -> handlePacket(packet));
+                return;
+            }
+
+            PendingRequest request = removePendingRequest(packet.getRequestId());
 
-            if (handler == null) {
+            if (request == null) {
                 return;
             }
 
-            handler.handleResponse(packet, null);
+            requestCompleted(request);
+            request.getHandler().handleResponse(packet, null);
         }
     }
 
@@ -107,12 +181,131 @@ public abstract class AbstractRemoteChannel implements PacketProcessor {
         channel.close().syncUninterruptibly();
     }
 
+    /**
+     * Filled only while {@link PerformanceMetrics#isDetailedMetricsEnabled()}
+     */
+    public ConnectionMetrics getMetrics() {
+        return ConnectionMetrics.of(channel);
+    }
+
+    private void requestsFinished(int requests) {
+        inFlightRequests.addAndGet(-requests);
+        PerformanceMetrics.PENDING_REQUESTS.add(-requests);
+    }
+
+    private void requestCompleted(PendingRequest request) {
+        if (request.getStartTime() == 0) {
+            return;
+        }
+
+        long roundTripTime = System.nanoTime() - request.getStartTime();
+
+        ConnectionMetrics.of(channel).getRoundTripTime().record(roundTripTime);
+
+        if (request.getRequestClass() != null) {
+            PacketTypeMetrics.of(request.getRequestClass()).getRoundTripTime().record(roundTripTime);
+        }
+    }
+
+    private void requestTimedOut(PendingRequest request) {
+        PerformanceMetrics.REQUEST_TIMEOUTS.addValue(1);
+
+        if (PerformanceMetrics.isDetailedMetricsEnabled()) {
+            ConnectionMetrics.of(channel).getRequestTimeouts().increment();
+
+            if (request.getRequestClass() != null) {
+                PacketTypeMetrics.of(request.getRequestClass()).getRequestTimeouts().increment();
+            }
+        }
+    }
+
+    private void requestFailed(@Nullable Class<? extends Packet> requestClass) {
+        PerformanceMetrics.REQUEST_FAILURES.addValue(1);
+
+        if (PerformanceMetrics.isDetailedMetricsEnabled()) {
+            ConnectionMetrics.of(channel).getRequestFailures().increment();
+
+            if (requestClass != null) {
+                PacketTypeMetrics.of(requestClass).getRequestFailures().increment();
+            }
+        }
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    public boolean isWritable() {
+        return channel.isWritable();
+    }
+
+    protected OutboundQueue getOutboundQueue() {
+        if (!outboundQueueResolved) {
+            outboundQueue = (OutboundQueue) channel.pipeline().get(Pipeline.OUTBOUND_QUEUE);
+            outboundQueueResolved = true;
+        }
+
+        return outboundQueue;
+    }
+
+    /**
+     * Senders outside the event loop go through the outbound queue,
+     * <br>so they are held back by its capacity too
+     */
+    protected void writePacket(@NonNull Packet packet, boolean flush) {
+        OutboundQueue outboundQueue = getOutboundQueue();
+
+        if (outboundQueue != null && !channel.eventLoop().inEventLoop()) {
+            try {
+                outboundQueue.submit(packet, flush);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return;
+        }
+
+        if (flush) {
+            channel.writeAndFlush(packet, channel.voidPromise());
+        } else {
+            channel.write(packet, channel.voidPromise());
+        }
+    }
+
     public void sendPacket(@NonNull Packet packet) {
         if (!isActive()) {
             return;
         }
 
-        channel.writeAndFlush(packet, channel.voidPromise());
+        writePacket(packet, true);
+    }
+
+    public void write(@NonNull Packet packet) {
+        if (!isActive()) {
+            return;
+        }
+
+        writePacket(packet, false);
+    }
+
+    public void flush() {
+        if (!isActive()) {
+            return;
+        }
+
+        channel.flush();
+    }
+
+    public void sendPackets(@NonNull Collection<? extends Packet> packets) {
+        if (!isActive()) {
+            return;
+        }
+
+        for (Packet packet : packets) {
+            writePacket(packet, false);
+        }
+
+        channel.flush();
     }
 
     public void sendResponse(@NonNull Packet request, @NonNull Packet response) {
@@ -131,27 +324,88 @@ public abstract class AbstractRemoteChannel implements PacketProcessor {
         return awaitPacket(packet, DEFAULT_TIMEOUT);
     }
 
+    /**
+     * Blocks the calling thread until the response arrives.
+     * <br>Must not be called from the channel event loop,
+     * <br>use {@link #requestAsync(Packet, long)} there instead
+     */
     public <T extends Packet> T awaitPacket(@NonNull Packet packet, long timeout) {
         checkChannelClosed();
 
-        AtomicReference<Throwable> refCause = new AtomicReference<>();
-        CompletableFuture<T> packetFuture = new CompletableFuture<>();
+        if (channel.eventLoop().inEventLoop()) {
+            throw new IllegalStateException("awaitPacket() would block the event loop, use requestAsync() instead");
+        }
 
-        awaitPacket(packet, (response, cause) -> {
-            if (cause != null) {
-                refCause.set(cause);
-            }
+        try {
+            return this.<T>requestAsync(packet, timeout).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public <T extends Packet> CompletionStage<T> requestAsync(@NonNull Packet packet) {
+        return requestAsync(packet, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * The returned stage completes on the channel event loop
+     */
+    public <T extends Packet> CompletionStage<T> requestAsync(@NonNull Packet packet, long timeout) {
+        return requestAsync(packet, timeout, null);
+    }
 
-            packetFuture.complete(response == null ? null : (T) response);
+    /**
+     * Sends a request without parking any thread.
+     * <br>The returned stage completes on {@code executor}
+     * <br>(or on the event loop if it is null), cancelling it
+     * <br>through {@link CompletionStage#toCompletableFuture()}
+     * <br>removes the pending request
+     */
+    public <T extends Packet> CompletionStage<T> requestAsync(@NonNull Packet packet, long timeout, @Nullable Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        if (!isActive()) {
+            future.completeExceptionally(new ClosedChannelException());
+            return future;
+        }
+
+        int requestId = submitRequest(packet, (T response, Throwable cause) -> {
+            if (executor == null) {
+                completeRequest(future, response, cause);
+            } else {
+                executor.execute(() -> completeRequest(future, response, cause));
+            }
         }, timeout);
 
-        T response = packetFuture.join();
+        future.whenComplete((response, cause) -> {
+            if (future.isCancelled()) {
+                cancelRequest(requestId);
+            }
+        });
+
+        return future;
+    }
 
-        if (refCause.get() != null) {
-            throw new RuntimeException(refCause.get());
+    private <T extends Packet> void completeRequest(CompletableFuture<T> future, T response, Throwable cause) {
+        if (cause != null) {
+            future.completeExceptionally(cause);
+        } else {
+            future.complete(response);
         }
+    }
+
+    public void cancelRequest(int requestId) {
+        EventLoop eventLoop = channel.eventLoop();
 
-        return response;
+        if (!eventLoop.inEventLoop()) {
+            if (!eventLoop.isShuttingDown()) {
+                eventLoop.execute(() -> cancelRequest(requestId));
+            }
+
+            return;
+        }
+
+        removeResponseHandler(requestId);
     }
 
     public <T extends Packet> void awaitPacket(@NonNull Packet packet,
@@ -175,20 +429,43 @@ public abstract class AbstractRemoteChannel implements PacketProcessor {
                                                long timeout) {
         checkChannelClosed();
 
+        submitRequest(packet, handler, timeout);
+    }
+
+    protected <T extends Packet> int submitRequest(@NonNull Packet packet,
+                                                   @NonNull FullResponseHandler<T> handler,
+                                                   long timeout) {
         int requestId = nextRequestId();
+        packet.setRequestId(requestId);
 
-        addResponseHandler(requestId, handler);
+        inFlightRequests.incrementAndGet();
+        PerformanceMetrics.PENDING_REQUESTS.increment();
 
-        packet.setRequestId(requestId);
-        sendPacket(packet);
+        if (channel.eventLoop().inEventLoop()) {
+            sendRequest(requestId, packet, handler, timeout);
+        } else {
+            channel.eventLoop().execute(() -> sendRequest(requestId, packet, handler, timeout));
+        }
 
-        channel.eventLoop().schedule(() -> {
-            FullResponseHandler<?> response = removeResponseHandler(requestId);
+        return requestId;
+    }
 
-            if (response != null) {
-                response.handleResponse(null, ReadTimeoutException.INSTANCE);
-            }
-        }, timeout, TimeUnit.MILLISECONDS);
+    protected <T extends Packet> void sendRequest(int requestId, @NonNull Packet packet,
+                                                  @NonNull FullResponseHandler<T> handler,
+                                                  long timeout) {
+        if (!isActive()) {
+            requestsFinished(1);
+            requestFailed(packet.getClass());
+
+            handler.handleResponse(null, new ClosedChannelException());
+            return;
+        }
+
+        PendingRequest request = addResponseHandler(requestId, packet.getClass(), handler);
+        sendPacket(packet);
+
+        request.setTimeout(TIMEOUT_TIMER.newTimeout(task -> expireRequest(requestId, request),
+                timeout, TimeUnit.MILLISECONDS));
     }
 
     public ScheduledFuture<?> schedule(Runnable r, long l, TimeUnit u) {
@@ -203,21 +480,47 @@ public abstract class AbstractRemoteChannel implements PacketProcessor {
         return channel.eventLoop().scheduleWithFixedDelay(runnable, l, l1, u);
     }
 
+    /**
+     * May be called off the event loop when packets of this connection
+     * <br>are still being processed on a {@link org.stonlexx.protocol.lib.pipeline.PacketExecutor},
+     * <br>only {@link #onDisconnect()} runs on the calling thread then
+     */
     @Override
     public void inactive() {
-        if (responseHandlers != null && !responseHandlers.isEmpty()) {
-            ClosedChannelException exception = new ClosedChannelException();
+        failPendingRequests();
+
+        onDisconnect();
+    }
 
-            responseHandlers.forEachValue(value -> {
-                value.handleResponse(null, exception);
+    private void failPendingRequests() {
+        EventLoop eventLoop = channel.eventLoop();
 
-                return true;
-            });
+        if (!eventLoop.inEventLoop()) {
+            try {
+                eventLoop.execute(this::failPendingRequests);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the event loop is terminated, nothing else touches the table anymore
+            }
+        }
 
-            responseHandlers.clear();
+        if (responseHandlers == null || responseHandlers.isEmpty()) {
+            return;
         }
 
-        onDisconnect();
+        ClosedChannelException exception = new ClosedChannelException();
+
+        responseHandlers.forEachValue(value -> {
+            value.cancelTimeout();
+            requestFailed(value.getRequestClass());
+
+            value.getHandler().handleResponse(null, exception);
+
+            return true;
+        });
+
+        requestsFinished(responseHandlers.size());
+        responseHandlers.clear();
     }
 
     protected void onDisconnect() {
@@ -23,6 +23,8 @@ public abstract class AbstractRemoteServerChannel extends AbstractRemoteChannel
 
     @Override
     public void inactive() {
+        super.inactive();
+
         client.reconnect();
     }
 }
@@ -6,19 +6,19 @@ import io.netty.channel.ChannelFactory;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import lombok.Getter;
+import io.netty.util.concurrent.Future;
 import lombok.NonNull;
 import org.stonlexx.protocol.lib.exception.BindException;
 import org.stonlexx.protocol.lib.packet.PacketDirection;
 
 import javax.annotation.Nullable;
 import java.nio.channels.AlreadyBoundException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 @Getter
@@ -34,12 +34,41 @@ public abstract class AbstractServerChannel extends AbstractChannel implements P
     private ChannelFuture future;
     private ServerSocketChannel channel;
 
+    /**
+     * Server sockets bound to the same port with SO_REUSEPORT,
+     * <br>the first one is {@link #getChannel()}
+     */
+    private final List<ServerSocketChannel> acceptorChannels = new CopyOnWriteArrayList<>();
+
+    protected int acceptors = 1;
+    protected EventLoopGroup acceptorGroup;
+
+    /**
+     * @param threads worker threads, 0 - Netty default (2 x cores)
+     */
     public AbstractServerChannel(String host, int port, int threads) {
         super(host, port, threads);
 
         init();
     }
 
+    /**
+     * Falls back to the best available transport if {@code transport} is not available
+     */
+    public AbstractServerChannel(String host, int port, int threads, @NonNull Transport transport) {
+        super(host, port, threads);
+
+        this.transport = transport;
+        init();
+    }
+
+    public AbstractServerChannel(String host, int port, @NonNull EventLoopResources eventLoopResources) {
+        super(host, port, 0);
+
+        this.eventLoopResources = eventLoopResources;
+        init();
+    }
+
     protected void checkBindAvailability() throws BindException {
         if (isConnected()) {
             throw new BindException(this, new AlreadyBoundException());
@@ -67,10 +96,18 @@ public abstract class AbstractServerChannel extends AbstractChannel implements P
             future.addListener(future -> {
                 if (future.isSuccess()) {
                     channel = (ServerSocketChannel) this.future.channel();
-
-                    if (success != null) {
-                        success.run();
-                    }
+                    acceptorChannels.add(channel);
+
+                    bindAcceptors(acceptors - 1, cause -> {
+                        if (cause == null) {
+                            if (success != null) {
+                                success.run();
+                            }
+                        } else {
+                            closeChannel();
+                            errorHandler.accept(new BindException(this, cause));
+                        }
+                    });
                 } else {
                     errorHandler.accept(new BindException(this, future.cause()));
                 }
@@ -90,20 +127,93 @@ public abstract class AbstractServerChannel extends AbstractChannel implements P
 
             if (future.isSuccess()) {
                 channel = (ServerSocketChannel) future.channel();
+                acceptorChannels.add(channel);
             } else {
                 throw future.cause();
             }
+
+            for (int i = 1; i < acceptors; i++) {
+                acceptorChannels.add((ServerSocketChannel) bootstrap.bind().sync().channel());
+            }
         } catch (Throwable t) {
+            if (channel != null) {
+                closeChannel();
+            }
+
             throw new BindException(this, t);
         } finally {
             future = null;
         }
     }
 
+    private void bindAcceptors(int remaining, Consumer<Throwable> callback) {
+        if (remaining <= 0) {
+            callback.accept(null);
+            return;
+        }
+
+        bootstrap.bind().addListener((ChannelFuture future) -> {
+            if (future.isSuccess()) {
+                acceptorChannels.add((ServerSocketChannel) future.channel());
+                bindAcceptors(remaining - 1, callback);
+            } else {
+                callback.accept(future.cause());
+            }
+        });
+    }
+
     protected void closeChannel() {
+        for (ServerSocketChannel acceptorChannel : acceptorChannels) {
+            acceptorChannel.close();
+        }
+
+        acceptorChannels.clear();
         channel.close();
     }
 
+    /**
+     * Binds {@code acceptors} server sockets to the same port with SO_REUSEPORT,
+     * <br>each on its own event loop, so the kernel spreads incoming connections
+     * <br>between them. Epoll only, other transports keep a single acceptor,
+     * <br>{@link #getAcceptors()} returns the count actually used.
+     * <br>Must be called before bind
+     */
+    public void setAcceptors(int acceptors) {
+        if (acceptors <= 0) {
+            throw new IllegalArgumentException("acceptors must be positive");
+        }
+
+        if (transport != Transport.EPOLL) {
+            acceptors = 1;
+        }
+
+        if (acceptorGroup != null) {
+            acceptorGroup.shutdownGracefully();
+            acceptorGroup = null;
+        }
+
+        this.acceptors = acceptors;
+
+        if (acceptors > 1) {
+            acceptorGroup = transport.newEventLoopGroup(acceptors, threadFactory);
+            boss = acceptorGroup;
+        } else {
+            boss = eventLoopResources.getAcceptor();
+        }
+
+        initBootstrap();
+    }
+
+    @Override
+    public Future<?> shutdown() {
+        if (acceptorGroup != null) {
+            acceptorGroup.shutdownGracefully();
+            acceptorGroup = null;
+        }
+
+        return super.shutdown();
+    }
+
     protected void interruptFuture() {
         future.cancel(true);
         future = null;
@@ -116,6 +226,7 @@ public abstract class AbstractServerChannel extends AbstractChannel implements P
         return newClientChannel(channel);
     }
 
+    @Override
     public void closeConnection() {
         if (isConnected()) {
             closeChannel();
@@ -132,13 +243,13 @@ public abstract class AbstractServerChannel extends AbstractChannel implements P
     protected void init() {
         super.init();
 
-        initChannelFactory();
         initEventLoopGroups();
+        initChannelFactory();
         initBootstrap();
     }
 
     protected void initChannelFactory() {
-        channelFactory = epoll ? EpollServerSocketChannel::new : NioServerSocketChannel::new;
+        channelFactory = transport.getServerChannelFactory();
     }
 
     @Override
@@ -152,13 +263,15 @@ public abstract class AbstractServerChannel extends AbstractChannel implements P
     }
 
     protected void initEventLoopGroups() {
-        if (epoll) {
-            boss = new EpollEventLoopGroup(1, threadFactory);
-            worker = new EpollEventLoopGroup(threadFactory);
-        } else {
-            boss = new NioEventLoopGroup(1, threadFactory);
-            worker = new NioEventLoopGroup(threadFactory);
+        if (eventLoopResources == null) {
+            eventLoopResources = EventLoopResources.create(transport == null ? Transport.best() : transport, 1, threads);
+            ownsEventLoops = true;
         }
+
+        transport = eventLoopResources.getTransport();
+
+        boss = eventLoopResources.getAcceptor();
+        worker = eventLoopResources.getWorker();
     }
 
     protected void initBootstrap() {
@@ -168,6 +281,10 @@ public abstract class AbstractServerChannel extends AbstractChannel implements P
                 .channelFactory(channelFactory)
                 .childHandler(channelInitializer)
                 .group(boss, worker);
+
+        if (acceptors > 1) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
     }
 
 }
@@ -0,0 +1,19 @@
+package org.stonlexx.protocol.lib.channel;
+
+/**
+ * How {@link AbstractPooledClientChannel} picks a connection
+ * <br>for calls without an affinity key
+ */
+public enum BalancingStrategy {
+
+    /**
+     * Connected members in turn
+     */
+    ROUND_ROBIN,
+
+    /**
+     * The connected member with the fewest unanswered requests
+     */
+    LEAST_IN_FLIGHT
+
+}
@@ -0,0 +1,94 @@
+package org.stonlexx.protocol.lib.channel;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.Future;
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * Event loop groups that any number of servers and clients can share.
+ * <br>A channel never shuts down resources it was given, only the ones
+ * <br>it created itself
+ */
+@Getter
+public class EventLoopResources {
+
+    private static volatile EventLoopResources shared;
+
+    /**
+     * One boss thread and 2 x cores worker threads, created on first use
+     * <br>and kept for the lifetime of the JVM
+     */
+    public static EventLoopResources shared() {
+        if (shared == null) {
+            synchronized (EventLoopResources.class) {
+                if (shared == null) {
+                    shared = create(1, 0);
+                }
+            }
+        }
+
+        return shared;
+    }
+
+    /**
+     * Worker group only, servers use it for accepting too
+     */
+    public static EventLoopResources create(int workerThreads) {
+        return create(Transport.best(), workerThreads);
+    }
+
+    /**
+     * @param workerThreads 0 - Netty default (2 x cores)
+     */
+    public static EventLoopResources create(int bossThreads, int workerThreads) {
+        return create(Transport.best(), bossThreads, workerThreads);
+    }
+
+    /**
+     * Falls back to the best available transport if {@code transport} is not available
+     */
+    public static EventLoopResources create(@NonNull Transport transport, int workerThreads) {
+        transport = transport.orFallback();
+
+        return new EventLoopResources(transport, null,
+                transport.newEventLoopGroup(workerThreads, AbstractChannel.threadFactory));
+    }
+
+    public static EventLoopResources create(@NonNull Transport transport, int bossThreads, int workerThreads) {
+        transport = transport.orFallback();
+
+        return new EventLoopResources(transport,
+                transport.newEventLoopGroup(bossThreads, AbstractChannel.threadFactory),
+                transport.newEventLoopGroup(workerThreads, AbstractChannel.threadFactory));
+    }
+
+    private final Transport transport;
+
+    @Nullable
+    private final EventLoopGroup boss;
+    private final EventLoopGroup worker;
+
+    /**
+     * Groups must belong to the given transport
+     */
+    public EventLoopResources(@NonNull Transport transport, @Nullable EventLoopGroup boss, @NonNull EventLoopGroup worker) {
+        this.transport = transport;
+        this.boss = boss;
+        this.worker = worker;
+    }
+
+    public EventLoopGroup getAcceptor() {
+        return boss != null ? boss : worker;
+    }
+
+    public Future<?> shutdownGracefully() {
+        if (boss != null) {
+            boss.shutdownGracefully();
+        }
+
+        return worker.shutdownGracefully();
+    }
+}
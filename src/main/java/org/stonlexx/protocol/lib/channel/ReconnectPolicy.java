@@ -0,0 +1,78 @@
+package org.stonlexx.protocol.lib.channel;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff with full jitter: before attempt {@code n}
+ * <br>a client waits a random delay in {@code [0, min(maxDelay, baseDelay * 2^n)]},
+ * <br>so clients dropped by the same server restart do not come back all at once.
+ * <br>Clients sharing a policy also share its limit on connection attempts in flight
+ */
+@Getter
+public class ReconnectPolicy {
+
+    /**
+     * 100 ms base, 30 s max, no limit on attempts in flight
+     */
+    public static final ReconnectPolicy DEFAULT = new ReconnectPolicy(100, 30_000, TimeUnit.MILLISECONDS, 0);
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * 0 - unlimited
+     */
+    private final int maxAttemptsInFlight;
+
+    private final Semaphore attemptsInFlight;
+
+    /**
+     * Delays are kept in milliseconds, a base delay below 1 ms is rejected
+     */
+    public ReconnectPolicy(long baseDelay, long maxDelay, @NonNull TimeUnit unit, int maxAttemptsInFlight) {
+        long baseDelayMillis = unit.toMillis(baseDelay);
+        long maxDelayMillis = unit.toMillis(maxDelay);
+
+        if (baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("baseDelay must be at least 1 ms and not greater than maxDelay");
+        }
+
+        if (maxAttemptsInFlight < 0) {
+            throw new IllegalArgumentException("maxAttemptsInFlight must not be negative");
+        }
+
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttemptsInFlight = maxAttemptsInFlight;
+        this.attemptsInFlight = maxAttemptsInFlight == 0 ? null : new Semaphore(maxAttemptsInFlight);
+    }
+
+    /**
+     * @param attempt 0 for the first reconnect after a disconnect
+     */
+    public long nextDelayMillis(int attempt) {
+        long ceiling = attempt >= Long.numberOfLeadingZeros(baseDelayMillis) - 1
+                ? maxDelayMillis
+                : Math.min(maxDelayMillis, baseDelayMillis << attempt);
+
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @return false if too many clients are connecting right now
+     */
+    public boolean tryAcquireAttempt() {
+        return attemptsInFlight == null || attemptsInFlight.tryAcquire();
+    }
+
+    public void releaseAttempt() {
+        if (attemptsInFlight != null) {
+            attemptsInFlight.release();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.stonlexx.protocol.lib.channel;
+
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ReflectiveChannelFactory;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Netty transports in order of preference.
+ * <br>io_uring is looked up reflectively, it is used only when
+ * <br>netty-incubator-transport-native-io_uring is on the classpath
+ * <br>and the running kernel supports it
+ */
+public enum Transport {
+
+    IO_URING {
+        private static final String PACKAGE = "io.netty.incubator.channel.uring.";
+
+        @Override
+        public boolean isAvailable() {
+            try {
+                return (boolean) Class.forName(PACKAGE + "IOUring").getMethod("isAvailable").invoke(null);
+            } catch (Throwable t) {
+                return false;
+            }
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            try {
+                return (EventLoopGroup) Class.forName(PACKAGE + "IOUringEventLoopGroup")
+                        .getConstructor(int.class, ThreadFactory.class)
+                        .newInstance(threads, threadFactory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("io_uring transport is not available", e);
+            }
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getSocketChannelClass() {
+            return load("IOUringSocketChannel", SocketChannel.class);
+        }
+
+        @Override
+        public ChannelFactory<ServerSocketChannel> getServerChannelFactory() {
+            return new ReflectiveChannelFactory<>(load("IOUringServerSocketChannel", ServerSocketChannel.class));
+        }
+
+        private <T> Class<? extends T> load(String name, Class<T> type) {
+            try {
+                return Class.forName(PACKAGE + name).asSubclass(type);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("io_uring transport is not available", e);
+            }
+        }
+    },
+
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getSocketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public ChannelFactory<ServerSocketChannel> getServerChannelFactory() {
+            return EpollServerSocketChannel::new;
+        }
+    },
+
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getSocketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public ChannelFactory<ServerSocketChannel> getServerChannelFactory() {
+            return NioServerSocketChannel::new;
+        }
+    };
+
+    private static volatile Transport best;
+
+    /**
+     * The first available transport: io_uring, epoll, then NIO
+     */
+    public static Transport best() {
+        if (best == null) {
+            for (Transport transport : values()) {
+                if (transport.isAvailable()) {
+                    best = transport;
+                    break;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * The transport itself if available, otherwise {@link #best()}
+     */
+    public Transport orFallback() {
+        return isAvailable() ? this : best();
+    }
+
+    public abstract boolean isAvailable();
+
+    public abstract EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory);
+
+    public abstract Class<? extends SocketChannel> getSocketChannelClass();
+
+    public abstract ChannelFactory<ServerSocketChannel> getServerChannelFactory();
+}
@@ -0,0 +1,73 @@
+package org.stonlexx.protocol.lib.metrics;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики одного подключения, хранятся в атрибуте канала.
+ * <br>Заполняются только при {@link PerformanceMetrics#isDetailedMetricsEnabled()}
+ */
+@Getter
+public class ConnectionMetrics {
+
+    private static final AttributeKey<ConnectionMetrics> KEY = AttributeKey.valueOf("connection-metrics");
+
+    public static ConnectionMetrics of(@NonNull Channel channel) {
+        ConnectionMetrics metrics = channel.attr(KEY).get();
+
+        if (metrics == null) {
+            ConnectionMetrics created = new ConnectionMetrics();
+            metrics = channel.attr(KEY).setIfAbsent(created);
+
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+
+        return metrics;
+    }
+
+    private final LongAdder receivedPackets = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+
+    private final LongAdder sentPackets = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * От отправки запроса до получения ответа
+     */
+    private final LatencyHistogram roundTripTime = new LatencyHistogram();
+
+    private final LongAdder requestTimeouts = new LongAdder();
+    private final LongAdder requestFailures = new LongAdder();
+
+    public void recordReceived(int bytes) {
+        receivedPackets.increment();
+        receivedBytes.add(bytes);
+    }
+
+    public void recordSent(int bytes) {
+        sentPackets.increment();
+        sentBytes.add(bytes);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "[received=" + receivedPackets.sum() + " (" + receivedBytes.sum() + " B)"
+                + ", sent=" + sentPackets.sum() + " (" + sentBytes.sum() + " B)"
+                + ", errors=" + errors.sum()
+                + ", round trip: " + roundTripTime
+                + ", timeouts=" + requestTimeouts.sum()
+                + ", failures=" + requestFailures.sum() + "]";
+    }
+}
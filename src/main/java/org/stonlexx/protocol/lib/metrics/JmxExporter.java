@@ -0,0 +1,281 @@
+package org.stonlexx.protocol.lib.metrics;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Publishes {@link PerformanceMetrics} and every {@link PacketTypeMetrics}
+ * <br>as MXBeans under the {@value #DOMAIN} domain.
+ * <br>Packet classes seen after {@link #register()} are published as they appear
+ */
+public final class JmxExporter {
+
+    public static final String DOMAIN = "org.stonlexx.protocol";
+
+    private static volatile boolean registered;
+
+    private JmxExporter() {
+    }
+
+    public static synchronized void register() throws JMException {
+        if (registered) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new PerformanceMetricsBean(), globalName());
+
+        registered = true;
+
+        PacketTypeMetrics.setCreationListener(JmxExporter::registerPacketType);
+        PacketTypeMetrics.getAll().forEach(JmxExporter::registerPacketType);
+    }
+
+    public static synchronized void unregister() throws JMException {
+        if (!registered) {
+            return;
+        }
+
+        registered = false;
+        PacketTypeMetrics.setCreationListener(null);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.unregisterMBean(globalName());
+
+        for (ObjectName name : server.queryNames(new ObjectName(DOMAIN + ":type=PacketTypeMetrics,*"), null)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    public static boolean isRegistered() {
+        return registered;
+    }
+
+    private static ObjectName globalName() throws JMException {
+        return new ObjectName(DOMAIN + ":type=PerformanceMetrics");
+    }
+
+    private static synchronized void registerPacketType(@NonNull PacketTypeMetrics metrics) {
+        if (!registered) {
+            return;
+        }
+
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=PacketTypeMetrics,name="
+                    + ObjectName.quote(metrics.getPacketClass().getName()));
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            server.registerMBean(new PacketTypeBean(metrics), name);
+        } catch (InstanceAlreadyExistsException e) {
+            // register() and the creation listener may both see the same metrics
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics of " + metrics.getPacketClass().getName(), e);
+        }
+    }
+
+    private static class PerformanceMetricsBean implements PerformanceMetricsMXBean {
+
+        @Override
+        public long getUptime() {
+            return PerformanceMetrics.isMetricsEnabled() ? PerformanceMetrics.getUptime() : 0;
+        }
+
+        @Override
+        public long getSentPackets() {
+            return PerformanceMetrics.SENT_PACKETS.getTotalValue();
+        }
+
+        @Override
+        public long getReceivedPackets() {
+            return PerformanceMetrics.RECEIVED_PACKETS.getTotalValue();
+        }
+
+        @Override
+        public long getUploadBytes() {
+            return PerformanceMetrics.TRAFFIC_UPLOAD.getTotalValue();
+        }
+
+        @Override
+        public long getDownloadBytes() {
+            return PerformanceMetrics.TRAFFIC_DOWNLOAD.getTotalValue();
+        }
+
+        @Override
+        public long getDroppedPackets() {
+            return PerformanceMetrics.DROPPED_PACKETS.getTotalValue();
+        }
+
+        @Override
+        public long getEncodeBufferGrows() {
+            return PerformanceMetrics.ENCODE_BUFFER_GROWS.getTotalValue();
+        }
+
+        @Override
+        public long getRequestTimeouts() {
+            return PerformanceMetrics.REQUEST_TIMEOUTS.getTotalValue();
+        }
+
+        @Override
+        public long getRequestFailures() {
+            return PerformanceMetrics.REQUEST_FAILURES.getTotalValue();
+        }
+
+        @Override
+        public double getSentPacketsPerSecond() {
+            return PerformanceMetrics.SENT_PACKETS.getSecond();
+        }
+
+        @Override
+        public double getReceivedPacketsPerSecond() {
+            return PerformanceMetrics.RECEIVED_PACKETS.getSecond();
+        }
+
+        @Override
+        public double getUploadBytesPerSecond() {
+            return PerformanceMetrics.TRAFFIC_UPLOAD.getSecond();
+        }
+
+        @Override
+        public double getDownloadBytesPerSecond() {
+            return PerformanceMetrics.TRAFFIC_DOWNLOAD.getSecond();
+        }
+
+        @Override
+        public double getSentPacketsPerSecondAvg1m() {
+            return PerformanceMetrics.SENT_PACKETS.getMinute();
+        }
+
+        @Override
+        public double getReceivedPacketsPerSecondAvg1m() {
+            return PerformanceMetrics.RECEIVED_PACKETS.getMinute();
+        }
+
+        @Override
+        public long getActiveConnections() {
+            return PerformanceMetrics.ACTIVE_CONNECTIONS.sum();
+        }
+
+        @Override
+        public long getQueuedPackets() {
+            return PerformanceMetrics.QUEUED_PACKETS.sum();
+        }
+
+        @Override
+        public long getPendingRequests() {
+            return PerformanceMetrics.PENDING_REQUESTS.sum();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class PacketTypeBean implements PacketTypeMetricsMXBean {
+
+        private final PacketTypeMetrics metrics;
+
+        @Override
+        public String getPacketClass() {
+            return metrics.getPacketClass().getName();
+        }
+
+        @Override
+        public long getReceivedPackets() {
+            return metrics.getReceivedPackets().sum();
+        }
+
+        @Override
+        public long getReceivedBytes() {
+            return metrics.getReceivedBytes().sum();
+        }
+
+        @Override
+        public long getSentPackets() {
+            return metrics.getSentPackets().sum();
+        }
+
+        @Override
+        public long getSentBytes() {
+            return metrics.getSentBytes().sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return metrics.getErrors().sum();
+        }
+
+        @Override
+        public long getDecodeTimeP50() {
+            return metrics.getDecodeTime().getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getDecodeTimeP99() {
+            return metrics.getDecodeTime().getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getDecodeTimeMax() {
+            return metrics.getDecodeTime().getMax();
+        }
+
+        @Override
+        public long getProcessTimeP50() {
+            return metrics.getProcessTime().getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getProcessTimeP99() {
+            return metrics.getProcessTime().getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getProcessTimeMax() {
+            return metrics.getProcessTime().getMax();
+        }
+
+        @Override
+        public long getEncodeTimeP50() {
+            return metrics.getEncodeTime().getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getEncodeTimeP99() {
+            return metrics.getEncodeTime().getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getEncodeTimeMax() {
+            return metrics.getEncodeTime().getMax();
+        }
+
+        @Override
+        public long getRoundTripTimeP50() {
+            return metrics.getRoundTripTime().getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getRoundTripTimeP99() {
+            return metrics.getRoundTripTime().getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getRoundTripTimeMax() {
+            return metrics.getRoundTripTime().getMax();
+        }
+
+        @Override
+        public long getRequestTimeouts() {
+            return metrics.getRequestTimeouts().sum();
+        }
+
+        @Override
+        public long getRequestFailures() {
+            return metrics.getRequestFailures().sum();
+        }
+    }
+}
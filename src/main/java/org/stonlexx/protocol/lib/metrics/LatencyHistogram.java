@@ -0,0 +1,162 @@
+package org.stonlexx.protocol.lib.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма времени в наносекундах с логарифмически-линейными корзинами,
+ * <br>как в HdrHistogram: каждая степень двойки делится на 32 корзины,
+ * <br>так что погрешность перцентилей не больше ~3%.
+ * <br>Запись - одна атомарная операция, можно писать из любых потоков.
+ * <br>Значения больше ~18 минут попадают в последнюю корзину
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 39;
+    private static final int BUCKETS = ((MAX_EXPONENT - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + SUB_BUCKETS;
+
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        buckets.incrementAndGet(bucketIndex(Math.min(nanos, MAX_VALUE)));
+
+        count.increment();
+        sum.add(nanos);
+
+        long currentMax;
+
+        while (nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos)) {
+            // retry
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * Наибольшее значение, попадающее в корзину
+     */
+    static long bucketValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long subBucket = SUB_BUCKETS + (index & (SUB_BUCKETS - 1));
+
+        return ((subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Сумма всех записанных значений в наносекундах
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public double getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * @param percentile от 0 до 100, например 99.9
+     * @return время в наносекундах, не меньше чем у {@code percentile}% записей
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] values = new long[1];
+        getValuesAtPercentiles(new double[]{percentile}, values);
+
+        return values[0];
+    }
+
+    /**
+     * Несколько перцентилей за один проход, без копирования корзин
+     *
+     * @param percentiles по возрастанию
+     * @param values      сюда записываются значения в наносекундах
+     */
+    public void getValuesAtPercentiles(double[] percentiles, long[] values) {
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+
+        long max = this.max.get();
+        int percentileIndex = 0;
+
+        if (total > 0) {
+            long seen = 0;
+
+            for (int i = 0; i < BUCKETS && percentileIndex < percentiles.length; i++) {
+                seen += buckets.get(i);
+
+                while (percentileIndex < percentiles.length && seen >= target(percentiles[percentileIndex], total)) {
+                    values[percentileIndex++] = Math.min(bucketValue(i), max);
+                }
+            }
+        }
+
+        while (percentileIndex < percentiles.length) {
+            values[percentileIndex++] = total > 0 ? max : 0;
+        }
+    }
+
+    private static long target(double percentile, long total) {
+        return Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%s, mean=%.1fus, p50=%.1fus, p99=%.1fus, p99.9=%.1fus, max=%.1fus",
+                getCount(), getMean() / 1000,
+                toMicros(getValueAtPercentile(50)), toMicros(getValueAtPercentile(99)),
+                toMicros(getValueAtPercentile(99.9)), toMicros(getMax()));
+    }
+
+    private static double toMicros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
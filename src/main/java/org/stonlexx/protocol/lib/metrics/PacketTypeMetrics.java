@@ -0,0 +1,148 @@
+package org.stonlexx.protocol.lib.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import org.stonlexx.protocol.lib.packet.Packet;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Счетчики и гистограммы одного класса пакетов.
+ * <br>Заполняются только при {@link PerformanceMetrics#isDetailedMetricsEnabled()},
+ * <br>размер - байты id и тела пакета, без заголовка длины
+ */
+@Getter
+public class PacketTypeMetrics {
+
+    private static final Map<Class<?>, PacketTypeMetrics> ALL = new ConcurrentHashMap<>();
+
+    private static final ClassValue<PacketTypeMetrics> METRICS = new ClassValue<PacketTypeMetrics>() {
+
+        @Override
+        protected PacketTypeMetrics computeValue(Class<?> type) {
+            PacketTypeMetrics metrics = new PacketTypeMetrics(type);
+            PacketTypeMetrics existing = ALL.putIfAbsent(type, metrics);
+
+            if (existing != null) {
+                return existing;
+            }
+
+            // слушатель регистрирует MBean, это не должно происходить под блокировкой ALL
+            Consumer<PacketTypeMetrics> listener = creationListener;
+
+            if (listener != null) {
+                listener.accept(metrics);
+            }
+
+            return metrics;
+        }
+    };
+
+    private static volatile Consumer<PacketTypeMetrics> creationListener;
+
+    static void setCreationListener(Consumer<PacketTypeMetrics> listener) {
+        creationListener = listener;
+    }
+
+    public static PacketTypeMetrics of(@NonNull Class<? extends Packet> packetClass) {
+        return METRICS.get(packetClass);
+    }
+
+    /**
+     * Все классы пакетов, которые уже отправлялись или принимались
+     */
+    public static Collection<PacketTypeMetrics> getAll() {
+        return Collections.unmodifiableCollection(ALL.values());
+    }
+
+    public static void resetAll() {
+        ALL.values().forEach(PacketTypeMetrics::reset);
+    }
+
+    private final Class<?> packetClass;
+
+    /**
+     * Метка packet="..." для {@link PrometheusExporter}, создается при первой выгрузке
+     */
+    @Getter(AccessLevel.NONE)
+    volatile byte[] prometheusLabel;
+
+    private final LongAdder receivedPackets = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+
+    private final LongAdder sentPackets = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * От отправки запроса этого класса до получения ответа
+     */
+    private final LatencyHistogram roundTripTime = new LatencyHistogram();
+
+    private final LongAdder requestTimeouts = new LongAdder();
+    private final LongAdder requestFailures = new LongAdder();
+
+    private final LatencyHistogram decodeTime = new LatencyHistogram();
+    private final LatencyHistogram processTime = new LatencyHistogram();
+    private final LatencyHistogram encodeTime = new LatencyHistogram();
+
+    private PacketTypeMetrics(Class<?> packetClass) {
+        this.packetClass = packetClass;
+    }
+
+    public void recordDecode(int bytes, long nanos) {
+        receivedPackets.increment();
+        receivedBytes.add(bytes);
+        decodeTime.record(nanos);
+    }
+
+    public void recordProcess(long nanos) {
+        processTime.record(nanos);
+    }
+
+    public void recordEncode(int bytes, long nanos) {
+        sentPackets.increment();
+        sentBytes.add(bytes);
+        encodeTime.record(nanos);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public void reset() {
+        receivedPackets.reset();
+        receivedBytes.reset();
+        sentPackets.reset();
+        sentBytes.reset();
+        errors.reset();
+        requestTimeouts.reset();
+        requestFailures.reset();
+
+        decodeTime.reset();
+        processTime.reset();
+        encodeTime.reset();
+        roundTripTime.reset();
+    }
+
+    @Override
+    public String toString() {
+        return packetClass.getSimpleName()
+                + " [received=" + receivedPackets.sum() + " (" + receivedBytes.sum() + " B)"
+                + ", sent=" + sentPackets.sum() + " (" + sentBytes.sum() + " B)"
+                + ", errors=" + errors.sum()
+                + ", decode: " + decodeTime
+                + ", process: " + processTime
+                + ", encode: " + encodeTime
+                + ", round trip: " + roundTripTime
+                + ", timeouts=" + requestTimeouts.sum()
+                + ", failures=" + requestFailures.sum() + "]";
+    }
+}
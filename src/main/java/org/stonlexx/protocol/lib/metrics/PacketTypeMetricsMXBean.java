@@ -0,0 +1,47 @@
+package org.stonlexx.protocol.lib.metrics;
+
+/**
+ * Counters of one packet class, times are in nanoseconds
+ */
+public interface PacketTypeMetricsMXBean {
+
+    String getPacketClass();
+
+    long getReceivedPackets();
+
+    long getReceivedBytes();
+
+    long getSentPackets();
+
+    long getSentBytes();
+
+    long getErrors();
+
+    long getDecodeTimeP50();
+
+    long getDecodeTimeP99();
+
+    long getDecodeTimeMax();
+
+    long getProcessTimeP50();
+
+    long getProcessTimeP99();
+
+    long getProcessTimeMax();
+
+    long getEncodeTimeP50();
+
+    long getEncodeTimeP99();
+
+    long getEncodeTimeMax();
+
+    long getRoundTripTimeP50();
+
+    long getRoundTripTimeP99();
+
+    long getRoundTripTimeMax();
+
+    long getRequestTimeouts();
+
+    long getRequestFailures();
+}
@@ -1,8 +1,15 @@
 package org.stonlexx.protocol.lib.metrics;
 
-import lombok.Getter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
-import java.util.Arrays;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PerformanceMetrics {
 
@@ -26,10 +33,45 @@ public class PerformanceMetrics {
      */
     public static Metric RECEIVED_PACKETS = new Metric();
 
+    /**
+     * Кол-во перевыделений буфера при кодировании пакетов
+     */
+    public static Metric ENCODE_BUFFER_GROWS = new Metric();
+
+    /**
+     * Кол-во пакетов, выброшенных переполненными исходящими очередями
+     */
+    public static Metric DROPPED_PACKETS = new Metric();
+
+    /**
+     * Кол-во запросов, не дождавшихся ответа за отведенное время
+     */
+    public static Metric REQUEST_TIMEOUTS = new Metric();
+
+    /**
+     * Кол-во запросов, оборвавшихся вместе с подключением
+     */
+    public static Metric REQUEST_FAILURES = new Metric();
+
+    /**
+     * Кол-во активных подключений
+     */
+    public static final LongAdder ACTIVE_CONNECTIONS = new LongAdder();
+
+    /**
+     * Кол-во пакетов, ждущих в исходящих очередях
+     */
+    public static final LongAdder QUEUED_PACKETS = new LongAdder();
+
+    /**
+     * Кол-во запросов, ждущих ответа
+     */
+    public static final LongAdder PENDING_REQUESTS = new LongAdder();
+
     /**
      * Время, когда подключене было инициализированно
      */
-    public static long START_TIME;
+    public static volatile long START_TIME;
 
     /**
      * Сумма отправленных и входящих пакетов в секунду
@@ -45,6 +87,20 @@ public class PerformanceMetrics {
         return TRAFFIC_UPLOAD.getSecond() + TRAFFIC_DOWNLOAD.getSecond();
     }
 
+    /**
+     * Счетчики по классам пакетов и подключениям, гистограммы времени
+     * <br>декодирования, обработки и кодирования. Выключены по умолчанию
+     */
+    private static volatile boolean detailedMetrics;
+
+    public static boolean isDetailedMetricsEnabled() {
+        return detailedMetrics;
+    }
+
+    public static void setDetailedMetricsEnabled(boolean enabled) {
+        detailedMetrics = enabled;
+    }
+
     public static boolean isMetricsEnabled() {
         return START_TIME != 0;
     }
@@ -61,30 +117,94 @@ public class PerformanceMetrics {
         TRAFFIC_UPLOAD.reset();
         SENT_PACKETS.reset();
         RECEIVED_PACKETS.reset();
+        ENCODE_BUFFER_GROWS.reset();
+        DROPPED_PACKETS.reset();
+        REQUEST_TIMEOUTS.reset();
+        REQUEST_FAILURES.reset();
     }
 
+    /**
+     * Счетчик с окнами скорости за 1, 30 и 60 секунд.
+     * <br>Запись - один {@link LongAdder#add(long)}, без блокировок и потерь между потоками.
+     * <br>Раз в секунду общий поток снимает сумму в кольцевой буфер,
+     * <br>скорость за окно считается по двум снимкам и реально прошедшему времени
+     */
     public static class Metric {
 
-        private static final int SECOND = 1000;
-        private static final int MINUTE = SECOND * 30;
-        private static final int HALF_MINUTE = MINUTE / 2;
+        private static final int SECOND = 1;
+        private static final int HALF_MINUTE = 30;
+        private static final int MINUTE = 60;
+
+        /**
+         * Снимок на минуту назад и еще один запасной
+         */
+        private static final int RING_SIZE = MINUTE + 2;
+
+        /**
+         * Слабые ссылки: счетчик, созданный пользователем и больше
+         * <br>нигде не нужный, собирается GC и удаляется отсюда при следующем тике
+         */
+        private static final Queue<WeakReference<Metric>> METRICS = new ConcurrentLinkedQueue<>();
+
+        private static final ScheduledExecutorService TICKER = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("[Netty] Metrics Ticker")
+                        .setDaemon(true)
+                        .build());
+
+        static {
+            TICKER.scheduleAtFixedRate(Metric::tickAll, 1, 1, TimeUnit.SECONDS);
+        }
+
+        private static void tickAll() {
+            for (Iterator<WeakReference<Metric>> iterator = METRICS.iterator(); iterator.hasNext(); ) {
+                Metric metric = iterator.next().get();
+
+                if (metric == null) {
+                    iterator.remove();
+                } else {
+                    metric.tick();
+                }
+            }
+        }
+
+        private final LongAdder total = new LongAdder();
+
+        private final long[] sums = new long[RING_SIZE];
+        private final long[] times = new long[RING_SIZE];
 
-        @Getter
-        private long totalValue;
+        /**
+         * Кол-во снятых снимков, последний лежит в {@code (ticks - 1) % RING_SIZE}
+         */
+        private long ticks;
 
-        private int updatedValue = -1;
+        public Metric() {
+            reset();
 
-        private final long[] values = new long[MINUTE];
-        private final long[] lastValues = new long[MINUTE];
+            METRICS.add(new WeakReference<>(this));
+        }
+
+        public long getTotalValue() {
+            return total.sum();
+        }
 
+        /**
+         * Значений в секунду за последние 1-2 секунды, см. {@link #get(int)}
+         */
         public double getSecond() {
             return get(SECOND);
         }
 
+        /**
+         * Значений в секунду в среднем за последнюю минуту
+         */
         public double getMinute() {
             return get(MINUTE);
         }
 
+        /**
+         * Значений в секунду в среднем за последние 30 секунд
+         */
         public double getHalfMinute() {
             return get(HALF_MINUTE);
         }
@@ -98,34 +218,42 @@ public class PerformanceMetrics {
         }
 
         public void addValue(long value) {
-            int now = now();
-            long oldValue = values[now];
-
-            totalValue += value;
-
-            values[now] = now == updatedValue ? oldValue + value : value;
-            lastValues[now] = oldValue;
-
-            updatedValue = now;
+            total.add(value);
         }
 
-        public void reset() {
-            Arrays.fill(values, 0);
-            Arrays.fill(lastValues, 0);
+        public synchronized void reset() {
+            total.reset();
 
-            totalValue = 0;
-            updatedValue = -1;
+            ticks = 0;
+            tick();
         }
 
-        public int now() {
-            return (int) (System.currentTimeMillis() % SECOND);
-        }
+        private synchronized void tick() {
+            int index = (int) (ticks++ % RING_SIZE);
 
-        public double get(int time) {
-            int end = now();
-            int start = end >= time ? end - time : MINUTE - time + end;
+            sums[index] = total.sum();
+            times[index] = System.nanoTime();
+        }
 
-            return (values[end] + (time == MINUTE ? lastValues[start] : values[start]));
+        /**
+         * Средняя скорость в секунду за последние {@code seconds} секунд (не больше минуты).
+         * <br>Окно начинается со снимка, снятого от {@code seconds} до {@code seconds + 1}
+         * <br>секунд назад, и заканчивается сейчас: так в нем всегда есть полные {@code seconds}
+         * <br>секунд, а скорость делится на реально прошедшее время.
+         * <br>Пока истории меньше окна, считается по всей истории, но не меньше чем за секунду
+         */
+        public synchronized double get(int seconds) {
+            if (seconds <= 0 || seconds > MINUTE) {
+                throw new IllegalArgumentException("seconds must be in [1, " + MINUTE + "]");
+            }
+
+            long sum = total.sum();
+            long now = System.nanoTime();
+
+            int index = (int) (Math.max(0, ticks - 1 - seconds) % RING_SIZE);
+            long elapsed = Math.max(now - times[index], TimeUnit.SECONDS.toNanos(1));
+
+            return (sum - sums[index]) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
         }
     }
 
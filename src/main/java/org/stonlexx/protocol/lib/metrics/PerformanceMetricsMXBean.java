@@ -0,0 +1,49 @@
+package org.stonlexx.protocol.lib.metrics;
+
+/**
+ * Global counters of {@link PerformanceMetrics}, rates are per second
+ */
+public interface PerformanceMetricsMXBean {
+
+    long getUptime();
+
+    long getSentPackets();
+
+    long getReceivedPackets();
+
+    long getUploadBytes();
+
+    long getDownloadBytes();
+
+    long getDroppedPackets();
+
+    long getEncodeBufferGrows();
+
+    long getRequestTimeouts();
+
+    long getRequestFailures();
+
+    double getSentPacketsPerSecond();
+
+    double getReceivedPacketsPerSecond();
+
+    double getUploadBytesPerSecond();
+
+    double getDownloadBytesPerSecond();
+
+    /**
+     * Пакетов в секунду в среднем за последнюю минуту
+     */
+    double getSentPacketsPerSecondAvg1m();
+
+    /**
+     * Пакетов в секунду в среднем за последнюю минуту
+     */
+    double getReceivedPacketsPerSecondAvg1m();
+
+    long getActiveConnections();
+
+    long getQueuedPackets();
+
+    long getPendingRequests();
+}
@@ -0,0 +1,338 @@
+package org.stonlexx.protocol.lib.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import lombok.Getter;
+import lombok.NonNull;
+import org.stonlexx.protocol.lib.channel.EventLoopResources;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves every library metric in the Prometheus text format on {@code GET /metrics}.
+ * <br>Runs on the given event loops, the text is rendered on a separate
+ * <br>single-thread executor straight into a pooled buffer,
+ * <br>so a scrape never holds up packet I/O
+ */
+public class PrometheusExporter {
+
+    private static final String PREFIX = "netty_protocol_";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    private static final byte[][] QUANTILE_LABELS = {
+            quantileLabel("0.5"), quantileLabel("0.99"), quantileLabel("0.999")
+    };
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    @Getter
+    private final InetSocketAddress address;
+    private final EventLoopResources eventLoopResources;
+
+    private EventExecutorGroup renderExecutor;
+    private Channel channel;
+
+    public PrometheusExporter(@NonNull InetSocketAddress address, @NonNull EventLoopResources eventLoopResources) {
+        this.address = address;
+        this.eventLoopResources = eventLoopResources;
+    }
+
+    public PrometheusExporter(int port) {
+        this(new InetSocketAddress(port), EventLoopResources.shared());
+    }
+
+    public synchronized void start() throws InterruptedException {
+        if (channel != null) {
+            return;
+        }
+
+        renderExecutor = new DefaultEventExecutorGroup(1, new ThreadFactoryBuilder()
+                .setNameFormat("[Netty] Prometheus Exporter")
+                .setDaemon(true)
+                .build());
+
+        channel = new ServerBootstrap()
+                .group(eventLoopResources.getAcceptor(), eventLoopResources.getWorker())
+                .channelFactory(eventLoopResources.getTransport().getServerChannelFactory())
+                .localAddress(address)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new HttpObjectAggregator(4096));
+                        ch.pipeline().addLast(renderExecutor, new MetricsHandler());
+                    }
+                })
+                .bind()
+                .sync()
+                .channel();
+    }
+
+    public synchronized void stop() {
+        if (channel == null) {
+            return;
+        }
+
+        channel.close().syncUninterruptibly();
+        channel = null;
+
+        renderExecutor.shutdownGracefully();
+        renderExecutor = null;
+    }
+
+    /**
+     * Appends all metrics in the Prometheus text format
+     */
+    public static void writeMetrics(@NonNull ByteBuf buf) {
+        writeCounter(buf, "sent_packets_total", "Packets sent", PerformanceMetrics.SENT_PACKETS);
+        writeCounter(buf, "received_packets_total", "Packets received", PerformanceMetrics.RECEIVED_PACKETS);
+        writeCounter(buf, "upload_bytes_total", "Bytes sent", PerformanceMetrics.TRAFFIC_UPLOAD);
+        writeCounter(buf, "download_bytes_total", "Bytes received", PerformanceMetrics.TRAFFIC_DOWNLOAD);
+        writeCounter(buf, "dropped_packets_total", "Packets dropped by full outbound queues", PerformanceMetrics.DROPPED_PACKETS);
+        writeCounter(buf, "encode_buffer_grows_total", "Encode buffers grown past the predicted size", PerformanceMetrics.ENCODE_BUFFER_GROWS);
+        writeCounter(buf, "request_timeouts_total", "Requests that got no response in time", PerformanceMetrics.REQUEST_TIMEOUTS);
+        writeCounter(buf, "request_failures_total", "Requests failed by a closed connection", PerformanceMetrics.REQUEST_FAILURES);
+
+        writeGauge(buf, "active_connections", "Open connections", PerformanceMetrics.ACTIVE_CONNECTIONS.sum());
+        writeGauge(buf, "queued_packets", "Packets held in outbound queues", PerformanceMetrics.QUEUED_PACKETS.sum());
+        writeGauge(buf, "pending_requests", "Requests waiting for a response", PerformanceMetrics.PENDING_REQUESTS.sum());
+
+        if (PacketTypeMetrics.getAll().isEmpty()) {
+            return;
+        }
+
+        writeHeader(buf, "packet_received_total", "Packets received by class", "counter");
+        PacketTypeMetrics.getAll().forEach(metrics -> writePacketSample(buf, "packet_received_total", metrics, metrics.getReceivedPackets().sum()));
+
+        writeHeader(buf, "packet_received_bytes_total", "Bytes received by packet class", "counter");
+        PacketTypeMetrics.getAll().forEach(metrics -> writePacketSample(buf, "packet_received_bytes_total", metrics, metrics.getReceivedBytes().sum()));
+
+        writeHeader(buf, "packet_sent_total", "Packets sent by class", "counter");
+        PacketTypeMetrics.getAll().forEach(metrics -> writePacketSample(buf, "packet_sent_total", metrics, metrics.getSentPackets().sum()));
+
+        writeHeader(buf, "packet_sent_bytes_total", "Bytes sent by packet class", "counter");
+        PacketTypeMetrics.getAll().forEach(metrics -> writePacketSample(buf, "packet_sent_bytes_total", metrics, metrics.getSentBytes().sum()));
+
+        writeHeader(buf, "packet_errors_total", "Errors by packet class", "counter");
+        PacketTypeMetrics.getAll().forEach(metrics -> writePacketSample(buf, "packet_errors_total", metrics, metrics.getErrors().sum()));
+
+        writeHeader(buf, "request_timeouts_by_packet_total", "Request timeouts by request class", "counter");
+        PacketTypeMetrics.getAll().forEach(metrics -> writePacketSample(buf, "request_timeouts_by_packet_total", metrics, metrics.getRequestTimeouts().sum()));
+
+        writeHeader(buf, "request_failures_by_packet_total", "Request failures by request class", "counter");
+        PacketTypeMetrics.getAll().forEach(metrics -> writePacketSample(buf, "request_failures_by_packet_total", metrics, metrics.getRequestFailures().sum()));
+
+        long[] values = new long[PERCENTILES.length];
+
+        writeHeader(buf, "packet_decode_seconds", "Decode time by packet class", "summary");
+        PacketTypeMetrics.getAll().forEach(metrics -> writeSummary(buf, "packet_decode_seconds", metrics, metrics.getDecodeTime(), values));
+
+        writeHeader(buf, "packet_process_seconds", "Processing time by packet class", "summary");
+        PacketTypeMetrics.getAll().forEach(metrics -> writeSummary(buf, "packet_process_seconds", metrics, metrics.getProcessTime(), values));
+
+        writeHeader(buf, "packet_encode_seconds", "Encode time by packet class", "summary");
+        PacketTypeMetrics.getAll().forEach(metrics -> writeSummary(buf, "packet_encode_seconds", metrics, metrics.getEncodeTime(), values));
+
+        writeHeader(buf, "request_round_trip_seconds", "Request to response time by request class", "summary");
+        PacketTypeMetrics.getAll().forEach(metrics -> writeSummary(buf, "request_round_trip_seconds", metrics, metrics.getRoundTripTime(), values));
+    }
+
+    private static void writeHeader(ByteBuf buf, String name, String help, String type) {
+        ByteBufUtil.writeAscii(buf, "# HELP ");
+        ByteBufUtil.writeAscii(buf, PREFIX);
+        ByteBufUtil.writeAscii(buf, name);
+        buf.writeByte(' ');
+        ByteBufUtil.writeAscii(buf, help);
+        ByteBufUtil.writeAscii(buf, "\n# TYPE ");
+        ByteBufUtil.writeAscii(buf, PREFIX);
+        ByteBufUtil.writeAscii(buf, name);
+        buf.writeByte(' ');
+        ByteBufUtil.writeAscii(buf, type);
+        buf.writeByte('\n');
+    }
+
+    private static void writeCounter(ByteBuf buf, String name, String help, PerformanceMetrics.Metric metric) {
+        writeHeader(buf, name, help, "counter");
+        writeSample(buf, name, null, metric.getTotalValue());
+    }
+
+    private static void writeGauge(ByteBuf buf, String name, String help, long value) {
+        writeHeader(buf, name, help, "gauge");
+        writeSample(buf, name, null, value);
+    }
+
+    private static void writeSample(ByteBuf buf, String name, byte[] label, long value) {
+        writeSample(buf, name, null, label, value);
+    }
+
+    private static void writeSample(ByteBuf buf, String name, String suffix, byte[] label, long value) {
+        writeSampleName(buf, name, suffix, label, null);
+        writeLong(buf, value);
+        buf.writeByte('\n');
+    }
+
+    private static void writeSampleName(ByteBuf buf, String name, String suffix, byte[] label, byte[] extraLabel) {
+        ByteBufUtil.writeAscii(buf, PREFIX);
+        ByteBufUtil.writeAscii(buf, name);
+
+        if (suffix != null) {
+            ByteBufUtil.writeAscii(buf, suffix);
+        }
+
+        if (label != null) {
+            buf.writeByte('{');
+            buf.writeBytes(label);
+
+            if (extraLabel != null) {
+                buf.writeBytes(extraLabel);
+            }
+
+            buf.writeByte('}');
+        }
+
+        buf.writeByte(' ');
+    }
+
+    /**
+     * Digits straight into the buffer, without a String
+     */
+    private static void writeLong(ByteBuf buf, long value) {
+        if (value < 0) {
+            buf.writeByte('-');
+            value = -value;
+        }
+
+        int digits = 1;
+
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+
+        int index = buf.writerIndex();
+        buf.ensureWritable(digits);
+
+        for (int i = digits - 1; i >= 0; i--) {
+            buf.setByte(index + i, (int) ('0' + value % 10));
+            value /= 10;
+        }
+
+        buf.writerIndex(index + digits);
+    }
+
+    /**
+     * Nanoseconds as seconds with 9 decimal places
+     */
+    private static void writeSeconds(ByteBuf buf, long nanos) {
+        writeLong(buf, nanos / NANOS_PER_SECOND);
+        buf.writeByte('.');
+
+        long fraction = nanos % NANOS_PER_SECOND;
+
+        for (long divisor = NANOS_PER_SECOND / 10; divisor > fraction && divisor > 1; divisor /= 10) {
+            buf.writeByte('0');
+        }
+
+        writeLong(buf, fraction);
+        buf.writeByte('\n');
+    }
+
+    private static byte[] quantileLabel(String quantile) {
+        return (",quantile=\"" + quantile + "\"").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Built once per packet class
+     */
+    private static byte[] packetLabel(PacketTypeMetrics metrics) {
+        byte[] label = metrics.prometheusLabel;
+
+        if (label == null) {
+            String className = metrics.getPacketClass().getName()
+                    .replace("\\", "\\\\")
+                    .replace("\"", "\\\"");
+
+            label = ("packet=\"" + className + "\"").getBytes(StandardCharsets.UTF_8);
+            metrics.prometheusLabel = label;
+        }
+
+        return label;
+    }
+
+    private static void writePacketSample(ByteBuf buf, String name, PacketTypeMetrics metrics, long value) {
+        writeSample(buf, name, packetLabel(metrics), value);
+    }
+
+    private static void writeSummary(ByteBuf buf, String name, PacketTypeMetrics metrics,
+                                     LatencyHistogram histogram, long[] values) {
+        byte[] label = packetLabel(metrics);
+        histogram.getValuesAtPercentiles(PERCENTILES, values);
+
+        for (int i = 0; i < QUANTILE_LABELS.length; i++) {
+            writeSampleName(buf, name, null, label, QUANTILE_LABELS[i]);
+            writeSeconds(buf, values[i]);
+        }
+
+        writeSampleName(buf, name, "_sum", label, null);
+        writeSeconds(buf, histogram.getSum());
+
+        writeSample(buf, name, "_count", label, histogram.getCount());
+    }
+
+    private static class MetricsHandler extends SimpleChannelInboundHandler<HttpRequest> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, HttpRequest request) {
+            FullHttpResponse response;
+
+            if (request.method() != HttpMethod.GET || !request.uri().startsWith("/metrics")) {
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND,
+                        ctx.alloc().buffer(0));
+            } else {
+                ByteBuf content = ctx.alloc().buffer();
+                writeMetrics(content);
+
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+            }
+
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            HttpUtil.setKeepAlive(response, keepAlive);
+
+            if (keepAlive) {
+                ctx.writeAndFlush(response, ctx.voidPromise());
+            } else {
+                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
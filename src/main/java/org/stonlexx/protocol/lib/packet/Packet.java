@@ -17,8 +17,18 @@ import lombok.Setter;
  * <br>есть Request ID, то SomePacket будет
  * <br>установлен Request ID этого пакета
  * </p>
+ * <p>
+ * Стек вызовов при создании пакета не заполняется,
+ * <br>поэтому ни создание, ни throw пакета не стоят
+ * <br>дороже обычной аллокации объекта
+ * </p>
  */
 public abstract class Packet extends RuntimeException {
+
+    protected Packet() {
+        super(null, null, false, false);
+    }
+
     @Setter
     @Getter
     private int requestId = -1;
@@ -48,4 +58,24 @@ public abstract class Packet extends RuntimeException {
     }
 
     public abstract void write(@NonNull ByteBuf buf) throws Exception;
+
+    /**
+     * true - пакет обрабатывается не в потоке Netty, а в
+     * <br>PacketExecutor канала (если он задан), с сохранением
+     * <br>порядка пакетов одного соединения. Подходит для
+     * <br>блокирующих обработчиков, но не для пакетов,
+     * <br>которые меняют PacketProtocol соединения
+     */
+    public boolean isOffloaded() {
+        return false;
+    }
+
+    /**
+     * Примерный размер тела пакета в байтах,
+     * <br>используется для выделения буфера при кодировании.
+     * <br>-1 - размер определяется по предыдущим пакетам этого класса
+     */
+    public int estimateSize() {
+        return -1;
+    }
 }
\ No newline at end of file
@@ -1,34 +1,91 @@
 package org.stonlexx.protocol.lib.packet;
 
 import org.stonlexx.protocol.lib.util.MetafactoryUtil;
-import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.TObjectIntMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.map.hash.TObjectIntHashMap;
 
+import java.util.Arrays;
 import java.util.function.Supplier;
 
+/**
+ * Packet id to factory lookups go through a dense array indexed by id,
+ * <br>class to id lookups are cached per class in a {@link ClassValue}.
+ * <br>Every registration publishes a new array, so lookups never lock;
+ * <br>after {@link #freeze()} the mapping can no longer change
+ */
 @SuppressWarnings("unchecked")
 public class PacketMapper {
 
-    private final TIntObjectMap<Supplier<? extends Packet>> idFactoryMap = new TIntObjectHashMap<>();
+    public static final int MAX_PACKET_ID = 0xFFFF;
+
+    private static final Supplier<? extends Packet>[] EMPTY = newFactories(0);
+
     private final TObjectIntMap<Class<? extends Packet>> classIdMap = new TObjectIntHashMap<>(10, 0.5F, -1);
 
-    public <T extends Packet> void registerPacket(int id, Class<T> cls, Supplier<T> factory) {
-        idFactoryMap.put(id, factory);
+    private final ClassValue<Integer> classIdCache = new ClassValue<Integer>() {
+
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            synchronized (PacketMapper.this) {
+                return classIdMap.get(type);
+            }
+        }
+    };
+
+    private volatile Supplier<? extends Packet>[] factories = EMPTY;
+    private volatile boolean frozen;
+
+    public synchronized <T extends Packet> void registerPacket(int id, Class<T> cls, Supplier<T> factory) {
+        if (frozen) {
+            throw new IllegalStateException("Packet mapper is frozen, unable to register " + cls.getName());
+        }
+
+        if (id < 0 || id > MAX_PACKET_ID) {
+            throw new IllegalArgumentException("Packet id " + id + " is out of range [0, " + MAX_PACKET_ID + "]");
+        }
+
+        Supplier<? extends Packet>[] factories = Arrays.copyOf(this.factories, Math.max(this.factories.length, id + 1));
+        factories[id] = factory;
+
         classIdMap.put(cls, id);
+        classIdCache.remove(cls);
+
+        this.factories = factories;
     }
 
     public <T extends Packet> void registerPacket(int id, Class<T> cls) {
+        Supplier<T> factory;
+
         try {
-            registerPacket(id, cls, MetafactoryUtil.objectConstructor(cls));
+            factory = MetafactoryUtil.objectConstructor(cls);
         } catch (Exception e) {
             e.printStackTrace();
+            return;
         }
+
+        // a frozen mapper or a bad id is the caller's mistake, not a reflective failure
+        registerPacket(id, cls, factory);
+    }
+
+    /**
+     * Forbids further registrations
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
     }
 
     public <T extends Packet> T newPacket(int id) {
-        Supplier<T> supplier = (Supplier<T>) idFactoryMap.get(id);
+        Supplier<? extends Packet>[] factories = this.factories;
+
+        if (id < 0 || id >= factories.length) {
+            return null;
+        }
+
+        Supplier<T> supplier = (Supplier<T>) factories[id];
 
         if (supplier == null) {
             return null;
@@ -38,6 +95,10 @@ public class PacketMapper {
     }
 
     public int getPacketId(Class<? extends Packet> cls) {
-        return classIdMap.get(cls);
+        return classIdCache.get(cls);
+    }
+
+    private static Supplier<? extends Packet>[] newFactories(int length) {
+        return (Supplier<? extends Packet>[]) new Supplier<?>[length];
     }
 }
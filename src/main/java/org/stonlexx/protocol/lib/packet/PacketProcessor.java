@@ -26,6 +26,13 @@ public interface PacketProcessor {
         // for implementation
     }
 
+    /**
+     * Process writability change
+     */
+    default void writabilityChanged(boolean writable) throws Exception {
+        // for implementation
+    }
+
     /**
      * Process error
      */
@@ -9,4 +9,9 @@ public enum PacketProtocol {
             TO_SERVER = new PacketMapper(),
             TO_CLIENT = new PacketMapper();
 
+    public void freeze() {
+        TO_SERVER.freeze();
+        TO_CLIENT.freeze();
+    }
+
 }
\ No newline at end of file
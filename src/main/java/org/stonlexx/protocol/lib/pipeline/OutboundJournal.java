@@ -0,0 +1,410 @@
+package org.stonlexx.protocol.lib.pipeline;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.util.internal.PlatformDependent;
+import lombok.Getter;
+import lombok.NonNull;
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
+import org.stonlexx.protocol.lib.packet.Packet;
+import org.stonlexx.protocol.lib.packet.PacketDirection;
+import org.stonlexx.protocol.lib.packet.PacketProtocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only journal of encoded frames, kept in memory-mapped segment files
+ * <br>while a client is disconnected and written to the next connection as is,
+ * <br>without decoding and encoding the packets again.
+ * <br>At most {@code maxSegments} segments of {@code segmentSize} bytes are kept,
+ * <br>once they are full the oldest one is dropped.
+ * <br>Segments left by a previous run are picked up on start.
+ * <br>A segment is deleted only after it was written out, so a connection
+ * <br>lost during replay may deliver some frames twice
+ */
+public class OutboundJournal {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    @Getter
+    private final File directory;
+
+    @Getter
+    private final int segmentSize;
+
+    @Getter
+    private final int maxSegments;
+
+    private final PacketEncoder encoder;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment tail;
+    private long nextSegmentId;
+
+    /**
+     * The connection the journal was last replayed to,
+     * <br>packets are journaled whenever it is not active
+     */
+    private Channel channel;
+
+    private boolean closed;
+
+    private final LongAdder journaledPackets = new LongAdder();
+    private final LongAdder droppedPackets = new LongAdder();
+    private final LongAdder failedDeletes = new LongAdder();
+
+    /**
+     * Frames are encoded for the {@link PacketProtocol#HANDSHAKE} state every new connection starts in,
+     * <br>see {@link #upgradeConnection(PacketProtocol)}
+     */
+    public OutboundJournal(@NonNull File directory, @NonNull PacketDirection direction,
+                           int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize <= PacketFramer.MAX_HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize is too small");
+        }
+
+        if (maxSegments <= 0) {
+            throw new IllegalArgumentException("maxSegments must be positive");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.encoder = new PacketEncoder(direction);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        recover();
+    }
+
+    public synchronized void upgradeConnection(PacketProtocol protocol) {
+        encoder.upgradeConnection(protocol);
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files);
+
+        for (File file : files) {
+            long id = Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+            Segment segment = new Segment(file, map(file, Math.max(segmentSize, (int) file.length())));
+
+            segment.recoverPosition();
+            segments.add(segment);
+
+            nextSegmentId = id + 1;
+        }
+
+        while (segments.size() > maxSegments) {
+            dropOldest();
+        }
+    }
+
+    private MappedByteBuffer map(File file, int size) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Journals the packet unless the last replayed connection is still active
+     *
+     * @return false if the packet should be sent to the connection instead
+     */
+    public boolean appendIfOffline(@NonNull Packet packet) {
+        synchronized (this) {
+            if (isOnline()) {
+                return false;
+            }
+
+            append(packet);
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether the last replayed connection is still active
+     */
+    public synchronized boolean isOnline() {
+        return channel != null && channel.isActive();
+    }
+
+    /**
+     * @return false if the packet was dropped, see {@link #getDroppedPackets()}
+     */
+    public synchronized boolean append(@NonNull Packet packet) {
+        if (closed) {
+            droppedPackets.increment();
+            return false;
+        }
+
+        ByteBuf frame = ByteBufAllocator.DEFAULT.heapBuffer(PacketSizePredictor.predict(packet));
+
+        try {
+            encoder.encodePacket(packet, frame);
+
+            if (frame.readableBytes() > segmentSize) {
+                droppedPackets.increment();
+                return false;
+            }
+
+            if (tail == null || tail.remaining() < frame.readableBytes()) {
+                rollover();
+            }
+
+            tail.append(frame);
+            journaledPackets.increment();
+
+            return true;
+
+        } catch (Exception e) {
+            droppedPackets.increment();
+            onAppendFailed(packet, e);
+
+            return false;
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Called when a packet could not be encoded or written to a segment,
+     * <br>it is counted in {@link #getDroppedPackets()}
+     */
+    protected void onAppendFailed(Packet packet, Exception cause) {
+        // override me
+    }
+
+    /**
+     * Called when a written out or dropped segment file could not be deleted,
+     * <br>it is counted in {@link #getFailedDeletes()} and picked up again on the next start
+     */
+    protected void onDeleteFailed(File file) {
+        // override me
+    }
+
+    private void delete(Segment segment) {
+        PlatformDependent.freeDirectBuffer(segment.buffer);
+
+        if (!segment.file.delete()) {
+            failedDeletes.increment();
+            onDeleteFailed(segment.file);
+        }
+    }
+
+    private void rollover() throws IOException {
+        if (tail != null) {
+            tail.buffer.force();
+        }
+
+        while (segments.size() >= maxSegments && dropOldest()) {
+            // drop until there is room
+        }
+
+        if (segments.size() >= maxSegments) {
+            throw new IOException("All " + maxSegments + " journal segments are being replayed");
+        }
+
+        long id = nextSegmentId++;
+        File file = new File(directory, String.format("%019d", id) + SEGMENT_SUFFIX);
+
+        tail = new Segment(file, map(file, segmentSize));
+        segments.add(tail);
+    }
+
+    private boolean dropOldest() {
+        for (Iterator<Segment> iterator = segments.iterator(); iterator.hasNext(); ) {
+            Segment segment = iterator.next();
+
+            if (!segment.replaying) {
+                iterator.remove();
+
+                if (segment == tail) {
+                    tail = null;
+                }
+
+                droppedPackets.add(segment.frames);
+                delete(segment);
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes every journaled frame to {@code channel} in order, straight from the mapped segments.
+     * <br>Must be called on the channel event loop before anything else is written to it
+     */
+    public synchronized void replay(@NonNull Channel channel) {
+        this.channel = channel;
+        this.tail = null;
+
+        boolean written = false;
+
+        for (Iterator<Segment> iterator = segments.iterator(); iterator.hasNext(); ) {
+            Segment segment = iterator.next();
+
+            if (segment.replaying) {
+                continue;
+            }
+
+            if (segment.position == 0) {
+                iterator.remove();
+                delete(segment);
+
+                continue;
+            }
+
+            segment.replaying = true;
+            written = true;
+
+            PerformanceMetrics.TRAFFIC_UPLOAD.addValue(segment.position);
+
+            channel.write(Unpooled.wrappedBuffer(segment.frames()))
+                    .addListener(future -> replayed(segment, future.isSuccess()));
+        }
+
+        if (written) {
+            channel.flush();
+        }
+    }
+
+    private synchronized void replayed(Segment segment, boolean success) {
+        segment.replaying = false;
+
+        if (success) {
+            segments.remove(segment);
+            delete(segment);
+
+        } else if (closed) {
+            segments.remove(segment);
+            PlatformDependent.freeDirectBuffer(segment.buffer);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.position > 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public long getJournaledPackets() {
+        return journaledPackets.sum();
+    }
+
+    /**
+     * Packets lost to the disk limit or to I/O errors
+     */
+    public long getDroppedPackets() {
+        return droppedPackets.sum();
+    }
+
+    public long getFailedDeletes() {
+        return failedDeletes.sum();
+    }
+
+    /**
+     * Deletes every segment that is not being replayed
+     */
+    public synchronized void clear() {
+        while (dropOldest()) {
+            // drop everything
+        }
+    }
+
+    /**
+     * Flushes the segments to disk and unmaps them, the files stay for the next start.
+     * <br>Segments still being written to a connection are unmapped once the write completes
+     */
+    public synchronized void close() {
+        closed = true;
+        tail = null;
+
+        for (Iterator<Segment> iterator = segments.iterator(); iterator.hasNext(); ) {
+            Segment segment = iterator.next();
+            segment.buffer.force();
+
+            if (!segment.replaying) {
+                iterator.remove();
+                PlatformDependent.freeDirectBuffer(segment.buffer);
+            }
+        }
+    }
+
+    private static class Segment {
+
+        private final File file;
+        private final MappedByteBuffer buffer;
+
+        private int position;
+        private int frames;
+        private boolean replaying;
+
+        private Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private int remaining() {
+            return buffer.capacity() - position;
+        }
+
+        private void append(ByteBuf frame) {
+            int length = frame.readableBytes();
+
+            frame.getBytes(frame.readerIndex(), (ByteBuffer) buffer.duplicate().position(position).limit(position + length));
+
+            position += length;
+            frames++;
+        }
+
+        /**
+         * Frames start with a padded VarInt whose first byte is never zero,
+         * <br>so the first zero byte marks the end of the written data
+         */
+        private void recoverPosition() {
+            while (position + PacketFramer.MAX_HEADER_SIZE <= buffer.capacity() && buffer.get(position) != 0) {
+                int length = (buffer.get(position) & 0x7F)
+                        | (buffer.get(position + 1) & 0x7F) << 7
+                        | (buffer.get(position + 2) & 0xFF) << 14;
+
+                if (position + PacketFramer.MAX_HEADER_SIZE + length > buffer.capacity()) {
+                    break;
+                }
+
+                position += PacketFramer.MAX_HEADER_SIZE + length;
+                frames++;
+            }
+        }
+
+        private ByteBuffer frames() {
+            return (ByteBuffer) buffer.duplicate().position(0).limit(position);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package org.stonlexx.protocol.lib.pipeline;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
+import org.stonlexx.protocol.lib.packet.Packet;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Bounded per-connection queue in front of the Netty outbound buffer.
+ * <br>While the channel is writable packets pass straight through,
+ * <br>once it is not they are held here (at most {@code capacity} of them)
+ * <br>and drained when the channel becomes writable again
+ */
+public class OutboundQueue extends ChannelDuplexHandler {
+
+    private final ArrayDeque<PendingWrite> queue = new ArrayDeque<>();
+
+    /**
+     * Not a monitor: a virtual thread waiting on one would pin its carrier thread
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasRoom = lock.newCondition();
+
+    @Getter
+    private final int capacity;
+
+    @Getter
+    private final OverflowPolicy policy;
+
+    private final Predicate<Packet> droppable;
+
+    private Channel channel;
+
+    private final AtomicInteger reserved = new AtomicInteger();
+    private volatile int waiters;
+
+    @Getter
+    private volatile int size;
+
+    private final LongAdder droppedPackets = new LongAdder();
+
+    public OutboundQueue(int capacity, @NonNull OverflowPolicy policy, @NonNull Predicate<Packet> droppable) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.policy = policy;
+        this.droppable = droppable;
+    }
+
+    /**
+     * Writes from a thread outside of the event loop.
+     * <br>With {@link OverflowPolicy#BLOCK} writes handed to the event loop
+     * <br>but not yet processed count against the capacity too, so a producer
+     * <br>faster than the event loop waits for room instead of piling up tasks.
+     * <br>Other policies apply only to packets actually held in the queue
+     * <br>of an unwritable channel, see {@link #write}
+     */
+    public void submit(@NonNull Packet packet, boolean flush) throws InterruptedException {
+        boolean reserve = policy == OverflowPolicy.BLOCK;
+
+        if (reserve) {
+            lock.lockInterruptibly();
+
+            try {
+                waiters++;
+
+                try {
+                    while (reserved.get() + size >= capacity && channel.isActive()) {
+                        hasRoom.await();
+                    }
+                } finally {
+                    waiters--;
+                }
+
+                reserved.incrementAndGet();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        channel.eventLoop().execute(() -> {
+            if (flush) {
+                channel.writeAndFlush(packet, channel.voidPromise());
+            } else {
+                channel.write(packet, channel.voidPromise());
+            }
+
+            if (reserve) {
+                reserved.decrementAndGet();
+
+                if (size == 0) {
+                    signal();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        channel = ctx.channel();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (queue.isEmpty() && ctx.channel().isWritable()) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        if (queue.size() >= capacity && !handleOverflow(ctx, msg, promise)) {
+            return;
+        }
+
+        queue.add(new PendingWrite(msg, promise));
+        updateSize();
+
+        if (queue.size() == 1) {
+            // unflushed writes alone may be what made the channel unwritable,
+            // without a flush they would never drain
+            ctx.flush();
+        }
+    }
+
+    /**
+     * @return false if the new message was dropped
+     */
+    private boolean handleOverflow(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        switch (policy) {
+            case BLOCK:
+                // only event loop writes get here, submit() waits for room
+                drop(new PendingWrite(msg, promise));
+                return false;
+
+            case DROP_OLDEST:
+                drop(queue.poll());
+                return true;
+
+            case DROP_MATCHING:
+                if (msg instanceof Packet && droppable.test((Packet) msg)) {
+                    drop(new PendingWrite(msg, promise));
+                    return false;
+                }
+
+                Iterator<PendingWrite> iterator = queue.iterator();
+
+                while (iterator.hasNext()) {
+                    PendingWrite write = iterator.next();
+
+                    if (write.msg instanceof Packet && droppable.test((Packet) write.msg)) {
+                        iterator.remove();
+                        drop(write);
+
+                        return true;
+                    }
+                }
+
+                return disconnect(ctx, msg, promise);
+
+            case DISCONNECT:
+            default:
+                return disconnect(ctx, msg, promise);
+        }
+    }
+
+    private boolean disconnect(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        drop(new PendingWrite(msg, promise));
+        ctx.close();
+
+        return false;
+    }
+
+    public long getDroppedPackets() {
+        return droppedPackets.sum();
+    }
+
+    private void drop(PendingWrite write) {
+        droppedPackets.increment();
+        PerformanceMetrics.DROPPED_PACKETS.addValue(1);
+
+        write.fail(new OutboundQueueOverflowException(capacity));
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            drain(ctx);
+        }
+
+        super.channelWritabilityChanged(ctx);
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        while (!queue.isEmpty() && ctx.channel().isWritable()) {
+            PendingWrite write = queue.poll();
+            ctx.write(write.msg, write.promise);
+        }
+
+        updateSize();
+        ctx.flush();
+
+        signal();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        failAll();
+
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        failAll();
+    }
+
+    private void failAll() {
+        if (!queue.isEmpty()) {
+            ClosedChannelException exception = new ClosedChannelException();
+
+            PendingWrite write;
+
+            while ((write = queue.poll()) != null) {
+                write.fail(exception);
+            }
+
+            updateSize();
+        }
+
+        signal();
+    }
+
+    private void updateSize() {
+        int newSize = queue.size();
+
+        PerformanceMetrics.QUEUED_PACKETS.add(newSize - size);
+        size = newSize;
+    }
+
+    private void signal() {
+        if (waiters > 0) {
+            lock.lock();
+
+            try {
+                hasRoom.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingWrite {
+
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        private void fail(Throwable cause) {
+            ReferenceCountUtil.release(msg);
+
+            if (!promise.isVoid()) {
+                promise.tryFailure(cause);
+            }
+        }
+    }
+
+    public static class OutboundQueueOverflowException extends RuntimeException {
+
+        public OutboundQueueOverflowException(int capacity) {
+            super("Outbound queue is full (" + capacity + " packets)", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.stonlexx.protocol.lib.pipeline;
+
+/**
+ * What {@link OutboundQueue} does with a packet
+ * <br>when the queue of an unwritable channel is full
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Senders outside the event loop wait until the queue has room.
+     * <br>Writes issued from the event loop itself cannot wait,
+     * <br>they are failed with {@link OutboundQueue.OutboundQueueOverflowException} instead
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued packet is dropped
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new packet is dropped if it is droppable, otherwise
+     * <br>the oldest queued droppable packet. If nothing can be
+     * <br>dropped the connection is closed
+     */
+    DROP_MATCHING,
+
+    /**
+     * The connection is closed
+     */
+    DISCONNECT
+}
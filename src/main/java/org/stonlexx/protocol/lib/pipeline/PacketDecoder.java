@@ -1,38 +1,52 @@
 package org.stonlexx.protocol.lib.pipeline;
 
+import org.stonlexx.protocol.lib.metrics.ConnectionMetrics;
+import org.stonlexx.protocol.lib.metrics.PacketTypeMetrics;
 import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderException;
-import lombok.RequiredArgsConstructor;
 import org.stonlexx.protocol.lib.packet.Packet;
 import org.stonlexx.protocol.lib.packet.PacketDirection;
+import org.stonlexx.protocol.lib.packet.PacketMapper;
 import org.stonlexx.protocol.lib.packet.PacketProtocol;
 import org.stonlexx.protocol.lib.util.PacketUtils;
 
 import java.util.List;
 
-@RequiredArgsConstructor
 public class PacketDecoder extends ByteToMessageDecoder {
 
     private final PacketDirection direction;
     private PacketProtocol state = PacketProtocol.HANDSHAKE;
+    private PacketMapper mapper;
+
+    public PacketDecoder(PacketDirection direction) {
+        this.direction = direction;
+        this.mapper = direction.getMapper(state);
+    }
 
     public void upgradeConnection(PacketProtocol newState) {
         state = newState;
+        mapper = direction.getMapper(newState);
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        boolean detailedMetrics = PerformanceMetrics.isDetailedMetricsEnabled();
+        long startTime = detailedMetrics ? System.nanoTime() : 0;
+
+        int length = in.readableBytes();
+        Packet packet = null;
+
         try {
-            if (in.readableBytes() == 0) {
+            if (length == 0) {
                 return;
             }
 
             int id = PacketUtils.readVarInt(in);
 
-            Packet packet = direction.getMapper(state).newPacket(id);
+            packet = mapper.newPacket(id);
 
             if (packet == null) {
                 callDecoderException("Bad Packet: [ID: %s, State: %s, Direction: %s]",
@@ -52,6 +66,21 @@ public class PacketDecoder extends ByteToMessageDecoder {
             out.add(packet);
 
             PerformanceMetrics.RECEIVED_PACKETS.addValue(1);
+
+            if (detailedMetrics) {
+                PacketTypeMetrics.of(packet.getClass()).recordDecode(length, System.nanoTime() - startTime);
+                ConnectionMetrics.of(ctx.channel()).recordReceived(length);
+            }
+        } catch (DecoderException e) {
+            if (detailedMetrics) {
+                if (packet != null) {
+                    PacketTypeMetrics.of(packet.getClass()).recordError();
+                }
+
+                ConnectionMetrics.of(ctx.channel()).recordError();
+            }
+
+            throw e;
         } finally {
             in.skipBytes(in.readableBytes());
         }
@@ -1,5 +1,7 @@
 package org.stonlexx.protocol.lib.pipeline;
 
+import org.stonlexx.protocol.lib.metrics.ConnectionMetrics;
+import org.stonlexx.protocol.lib.metrics.PacketTypeMetrics;
 import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
 import org.stonlexx.protocol.lib.packet.Packet;
 import org.stonlexx.protocol.lib.util.PacketUtils;
@@ -7,31 +9,101 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
-import lombok.RequiredArgsConstructor;
 import org.stonlexx.protocol.lib.packet.PacketDirection;
+import org.stonlexx.protocol.lib.packet.PacketMapper;
 import org.stonlexx.protocol.lib.packet.PacketProtocol;
 
-@RequiredArgsConstructor
 public class PacketEncoder extends MessageToByteEncoder<Packet> {
 
     private final PacketDirection direction;
     private PacketProtocol state = PacketProtocol.HANDSHAKE;
+    private PacketMapper mapper;
+
+    private int allocatedCapacity;
+
+    public PacketEncoder(PacketDirection direction) {
+        this.direction = direction;
+        this.mapper = direction.getMapper(state);
+    }
 
     public void upgradeConnection(PacketProtocol newState) {
         state = newState;
+        mapper = direction.getMapper(newState);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Packet packet, boolean preferDirect) {
+        int capacity = PacketSizePredictor.predict(packet);
+
+        ByteBuf buf = preferDirect
+                ? ctx.alloc().ioBuffer(capacity)
+                : ctx.alloc().heapBuffer(capacity);
+
+        allocatedCapacity = buf.capacity();
+        return buf;
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, Packet packet, ByteBuf buf) throws Exception {
-        int packetId = direction.getMapper(state).getPacketId(packet.getClass());
+        if (!PerformanceMetrics.isDetailedMetricsEnabled()) {
+            encodePacket(packet, buf);
+        } else {
+            encodeWithMetrics(ctx, packet, buf);
+        }
+
+        if (buf.capacity() > allocatedCapacity) {
+            PerformanceMetrics.ENCODE_BUFFER_GROWS.addValue(1);
+        }
+
+        PerformanceMetrics.SENT_PACKETS.addValue(1);
+        PerformanceMetrics.TRAFFIC_UPLOAD.addValue(buf.readableBytes());
+    }
+
+    private void encodeWithMetrics(ChannelHandlerContext ctx, Packet packet, ByteBuf buf) throws Exception {
+        PacketTypeMetrics metrics = PacketTypeMetrics.of(packet.getClass());
+        long startTime = System.nanoTime();
+
+        try {
+            encodePacket(packet, buf);
+        } catch (Exception e) {
+            metrics.recordError();
+            ConnectionMetrics.of(ctx.channel()).recordError();
+
+            throw e;
+        }
+
+        int length = buf.readableBytes() - PacketFramer.MAX_HEADER_SIZE;
+
+        metrics.recordEncode(length, System.nanoTime() - startTime);
+        ConnectionMetrics.of(ctx.channel()).recordSent(length);
+    }
+
+    /**
+     * Writes the whole frame, length header included, outside of a pipeline
+     */
+    public void encodePacket(Packet packet, ByteBuf buf) throws Exception {
+        int packetId = mapper.getPacketId(packet.getClass());
 
         if (packetId == -1) {
             throw new EncoderException("Tried to send unregistered packet: [Packet: " + packet + ", State: " + state + "]");
         }
 
+        int headerIndex = buf.writerIndex();
+
+        buf.ensureWritable(PacketFramer.MAX_HEADER_SIZE);
+        buf.writerIndex(headerIndex + PacketFramer.MAX_HEADER_SIZE);
+
         PacketUtils.writeVarInt(buf, packetId);
         packet.writePacket(buf);
 
-        PerformanceMetrics.SENT_PACKETS.addValue(1);
+        int length = buf.writerIndex() - headerIndex - PacketFramer.MAX_HEADER_SIZE;
+
+        if (length > PacketFramer.MAX_FRAME_LENGTH) {
+            throw new EncoderException("Packet is too big: [Packet: " + packet + ", Length: " + length + "]");
+        }
+
+        PacketUtils.setPaddedVarInt(buf, headerIndex, length);
+
+        PacketSizePredictor.of(packet.getClass()).record(buf.writerIndex() - headerIndex);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package org.stonlexx.protocol.lib.pipeline;
+
+import io.netty.channel.Channel;
+import org.stonlexx.protocol.lib.packet.Packet;
+
+/**
+ * Runs packet processing off the Netty I/O thread.
+ * <br>Tasks of one channel must run in submission order
+ */
+public interface PacketExecutor {
+
+    void execute(Channel channel, Runnable task);
+
+    /**
+     * Whether the packet is processed on this executor or inline
+     */
+    default boolean offloads(Packet packet) {
+        return packet.isOffloaded();
+    }
+
+    default void shutdown() {
+        // for implementation
+    }
+}
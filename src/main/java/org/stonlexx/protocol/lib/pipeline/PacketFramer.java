@@ -1,75 +1,66 @@
 package org.stonlexx.protocol.lib.pipeline;
 
-import org.stonlexx.protocol.lib.util.PacketUtils;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageCodec;
+import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.CorruptedFrameException;
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
 
 import java.util.List;
 
-public class PacketFramer extends ByteToMessageCodec<ByteBuf> {
+/**
+ * Frames are prefixed with a VarInt length of at most 3 bytes.
+ * <br>Outbound frames are written by {@link PacketEncoder}, which
+ * <br>reserves a padded 3-byte header and backfills it in place.
+ * <br>Received bytes are counted here, sent ones in the encoder
+ */
+public class PacketFramer extends ByteToMessageDecoder {
 
-    private static boolean DIRECT_WARNING = false;
-
-    @Override
-    protected void encode(ChannelHandlerContext ctx, ByteBuf from, ByteBuf to) {
-        int packetSize = from.readableBytes();
-        int headerSize = PacketUtils.getVarIntSize(packetSize);
-
-        to.ensureWritable(packetSize + headerSize);
-
-        PacketUtils.writeVarInt(to, packetSize);
-        to.writeBytes(from, from.readerIndex(), packetSize);
-    }
+    public static final int MAX_HEADER_SIZE = 3;
+    public static final int MAX_FRAME_LENGTH = (1 << 21) - 1;
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf buf, List<Object> out) {
-        buf.markReaderIndex();
-
-        byte[] header = new byte[3];
+        int startIndex = buf.readerIndex();
 
-        for (int i = 0; i < header.length; ++i) {
-            if (!buf.isReadable()) {
-                buf.resetReaderIndex();
-                return;
-            }
+        try {
+            decodeFrames(buf, out);
+        } finally {
+            PerformanceMetrics.TRAFFIC_DOWNLOAD.addValue(buf.readerIndex() - startIndex);
+        }
+    }
 
-            header[i] = buf.readByte();
+    private void decodeFrames(ByteBuf buf, List<Object> out) {
+        while (true) {
+            int readerIndex = buf.readerIndex();
+            int readable = buf.readableBytes();
 
-            if (header[i] >= 0) {
-                ByteBuf headerBuf = Unpooled.wrappedBuffer(header);
+            int length = 0;
+            int headerSize = 0;
 
-                try {
-                    int length = PacketUtils.readVarInt(headerBuf);
+            while (true) {
+                if (headerSize == readable) {
+                    return;
+                }
 
-                    if (buf.readableBytes() < length) {
-                        buf.resetReaderIndex();
-                        return;
-                    }
+                if (headerSize == MAX_HEADER_SIZE) {
+                    throw new CorruptedFrameException("length wider than 21-bit");
+                }
 
-                    if (buf.hasMemoryAddress()) {
-                        out.add(buf.slice(buf.readerIndex(), length).retain());
-                        buf.skipBytes(length);
-                    } else {
-                        if (!DIRECT_WARNING) {
-                            DIRECT_WARNING = true;
-                            System.err.println("Netty is not using direct IO buffers.");
-                        }
+                byte read = buf.getByte(readerIndex + headerSize);
+                length |= (read & 127) << headerSize++ * 7;
 
-                        ByteBuf dst = ctx.alloc().directBuffer(length);
-                        buf.readBytes(dst);
-                        out.add(dst);
-                    }
-                } finally {
-                    headerBuf.release();
+                if (read >= 0) {
+                    break;
                 }
+            }
 
+            if (readable - headerSize < length) {
                 return;
             }
-        }
 
-        throw new CorruptedFrameException("length wider than 21-bit");
+            out.add(buf.retainedSlice(readerIndex + headerSize, length));
+            buf.readerIndex(readerIndex + headerSize + length);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,24 +1,59 @@
 package org.stonlexx.protocol.lib.pipeline;
 
+import org.stonlexx.protocol.lib.metrics.ConnectionMetrics;
+import org.stonlexx.protocol.lib.metrics.PacketTypeMetrics;
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
 import org.stonlexx.protocol.lib.packet.Packet;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import lombok.RequiredArgsConstructor;
 import org.stonlexx.protocol.lib.packet.PacketProcessor;
 
-@RequiredArgsConstructor
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class PacketHandler extends ChannelInboundHandlerAdapter {
 
     private final PacketProcessor processor;
+    private final PacketExecutor executor;
+
+    /**
+     * Tasks submitted to the executor and not finished yet. While there are any,
+     * <br>every packet of this connection goes to the executor to keep the order
+     */
+    private final AtomicInteger offloadedTasks = new AtomicInteger();
+
+    public PacketHandler(PacketProcessor processor) {
+        this(processor, null);
+    }
+
+    public PacketHandler(PacketProcessor processor, @Nullable PacketExecutor executor) {
+        this.processor = processor;
+        this.executor = executor;
+    }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        PerformanceMetrics.ACTIVE_CONNECTIONS.increment();
+
         processor.active();
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        processor.inactive();
+        PerformanceMetrics.ACTIVE_CONNECTIONS.decrement();
+
+        if (offloadedTasks.get() > 0) {
+            offload(ctx, processor::inactive);
+        } else {
+            processor.inactive();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        processor.writabilityChanged(ctx.channel().isWritable());
+
+        super.channelWritabilityChanged(ctx);
     }
 
     @Override
@@ -26,12 +61,10 @@ public class PacketHandler extends ChannelInboundHandlerAdapter {
         if (msg instanceof Packet) {
             Packet packet = (Packet) msg;
 
-            try {
-                processor.process(packet);
-            } catch (Packet response) {
-                response.setRequestId(packet.getRequestId());
-
-                ctx.writeAndFlush(response);
+            if (executor != null && (executor.offloads(packet) || offloadedTasks.get() > 0)) {
+                offload(ctx, () -> processPacket(ctx, packet));
+            } else {
+                processPacket(ctx, packet);
             }
 
             return;
@@ -40,8 +73,72 @@ public class PacketHandler extends ChannelInboundHandlerAdapter {
         super.channelRead(ctx, msg);
     }
 
+    private void processPacket(ChannelHandlerContext ctx, Packet packet) throws Exception {
+        if (PerformanceMetrics.isDetailedMetricsEnabled()) {
+            processWithMetrics(ctx, packet);
+            return;
+        }
+
+        try {
+            processor.process(packet);
+        } catch (Packet response) {
+            response.setRequestId(packet.getRequestId());
+
+            ctx.writeAndFlush(response);
+        }
+    }
+
+    private void processWithMetrics(ChannelHandlerContext ctx, Packet packet) throws Exception {
+        PacketTypeMetrics metrics = PacketTypeMetrics.of(packet.getClass());
+        long startTime = System.nanoTime();
+
+        Packet response = null;
+
+        try {
+            processor.process(packet);
+        } catch (Packet thrown) {
+            response = thrown;
+        } catch (Exception e) {
+            metrics.recordError();
+            ConnectionMetrics.of(ctx.channel()).recordError();
+
+            throw e;
+        } finally {
+            metrics.recordProcess(System.nanoTime() - startTime);
+        }
+
+        if (response != null) {
+            response.setRequestId(packet.getRequestId());
+
+            ctx.writeAndFlush(response);
+        }
+    }
+
+    private void offload(ChannelHandlerContext ctx, Task task) {
+        offloadedTasks.incrementAndGet();
+
+        executor.execute(ctx.channel(), () -> {
+            try {
+                task.run();
+            } catch (Throwable cause) {
+                try {
+                    processor.process(cause);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            } finally {
+                offloadedTasks.decrementAndGet();
+            }
+        });
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         processor.process(cause);
     }
-}
\ No newline at end of file
+
+    private interface Task {
+
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,78 @@
+package org.stonlexx.protocol.lib.pipeline;
+
+import org.stonlexx.protocol.lib.packet.Packet;
+
+/**
+ * Learns the encoded size of every packet class, the same way
+ * <br>Netty's AdaptiveRecvByteBufAllocator learns read sizes:
+ * <br>grow at once when a packet did not fit, shrink only after
+ * <br>two encodes in a row used less than half of the estimate
+ * <p>
+ * Estimates are shared between all channels, updates are racy
+ * <br>on purpose - a lost update only costs one extra grow
+ * </p>
+ */
+public final class PacketSizePredictor {
+
+    private static final int MINIMUM = 64;
+    private static final int INITIAL = 256;
+    private static final int MAXIMUM = PacketFramer.MAX_HEADER_SIZE + PacketFramer.MAX_FRAME_LENGTH;
+
+    /**
+     * Header, VarInt packet id and request id
+     */
+    private static final int OVERHEAD = PacketFramer.MAX_HEADER_SIZE + 5 + 4;
+
+    private static final ClassValue<PacketSizePredictor> PREDICTORS = new ClassValue<PacketSizePredictor>() {
+
+        @Override
+        protected PacketSizePredictor computeValue(Class<?> type) {
+            return new PacketSizePredictor();
+        }
+    };
+
+    public static PacketSizePredictor of(Class<? extends Packet> cls) {
+        return PREDICTORS.get(cls);
+    }
+
+    public static int predict(Packet packet) {
+        int hint = packet.estimateSize();
+
+        if (hint >= 0) {
+            return Math.min(MAXIMUM, hint + OVERHEAD);
+        }
+
+        return of(packet.getClass()).estimate();
+    }
+
+    private volatile int estimate = INITIAL;
+    private boolean decreaseNow;
+
+    public int estimate() {
+        return estimate;
+    }
+
+    public void record(int actual) {
+        int current = estimate;
+
+        if (actual > current) {
+            estimate = Math.min(MAXIMUM, align(actual + (actual >>> 2)));
+            decreaseNow = false;
+
+        } else if (actual <= current >>> 1) {
+            if (decreaseNow) {
+                estimate = Math.max(MINIMUM, align(current - (current >>> 2)));
+            }
+
+            decreaseNow = !decreaseNow;
+
+        } else {
+
+            decreaseNow = false;
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 15) & ~15;
+    }
+}
@@ -1,10 +1,9 @@
 package org.stonlexx.protocol.lib.pipeline;
 
 import org.stonlexx.protocol.lib.channel.AbstractChannel;
-import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
-import org.stonlexx.protocol.lib.metrics.TrafficCounter;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 
 import java.util.function.BiConsumer;
 
@@ -14,6 +13,9 @@ public final class Pipeline {
     public static final String ENCODER = "packet-encoder";
     public static final String DECODER = "packet-decoder";
     public static final String HANDLER = "packet-handler";
+    public static final String FLUSH_CONSOLIDATION = "flush-consolidation";
+    public static final String OUTBOUND_QUEUE = "outbound-queue";
+    public static final String TRAFFIC_SHAPING = "traffic-shaping";
 
     private static BiConsumer<AbstractChannel, SocketChannel> pipelineInitializer;
 
@@ -35,13 +37,27 @@ public final class Pipeline {
         addCustomInitializer((channel, socket) -> {
             ChannelPipeline pipeline = socket.pipeline();
 
+            if (channel.getWriteBufferWaterMark() != null) {
+                socket.config().setWriteBufferWaterMark(channel.getWriteBufferWaterMark());
+            }
+
             pipeline.addLast(FRAMER, new PacketFramer());
             pipeline.addLast(ENCODER, new PacketEncoder(channel.getOutboundPacketDirection()));
             pipeline.addLast(DECODER, new PacketDecoder(channel.getInboundPacketDirection()));
-            pipeline.addLast(HANDLER, new PacketHandler(channel.newPacketProcessor(socket)));
 
-            if (PerformanceMetrics.isMetricsEnabled()) {
-                pipeline.addFirst(new TrafficCounter());
+            if (channel.getOutboundQueueCapacity() > 0) {
+                pipeline.addLast(OUTBOUND_QUEUE, new OutboundQueue(channel.getOutboundQueueCapacity(),
+                        channel.getOverflowPolicy(), channel.getDroppablePackets()));
+            }
+
+            pipeline.addLast(HANDLER, new PacketHandler(channel.newPacketProcessor(socket), channel.getPacketExecutor()));
+
+            if (channel.getFlushConsolidation() > 0) {
+                pipeline.addFirst(FLUSH_CONSOLIDATION, new FlushConsolidationHandler(channel.getFlushConsolidation(), true));
+            }
+
+            if (channel.getTrafficShaping() != null) {
+                pipeline.addFirst(TRAFFIC_SHAPING, channel.getTrafficShaping());
             }
         });
     }
@@ -0,0 +1,47 @@
+package org.stonlexx.protocol.lib.pipeline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.Channel;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Every channel is pinned to one of {@code stripes} single-thread
+ * <br>executors, so packets of a connection keep their order while
+ * <br>different connections are processed in parallel
+ */
+public class StripedPacketExecutor implements PacketExecutor {
+
+    private static final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("[Netty] Packet Worker #%s")
+            .setDaemon(true)
+            .build();
+
+    private final ExecutorService[] stripes;
+
+    public StripedPacketExecutor(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+
+        this.stripes = new ExecutorService[stripes];
+
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    @Override
+    public void execute(Channel channel, Runnable task) {
+        stripes[Math.floorMod(channel.hashCode(), stripes.length)].execute(task);
+    }
+
+    @Override
+    public void shutdown() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+}
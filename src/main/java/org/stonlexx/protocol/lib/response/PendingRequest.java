@@ -0,0 +1,46 @@
+package org.stonlexx.protocol.lib.response;
+
+import io.netty.util.Timeout;
+import lombok.Getter;
+import lombok.Setter;
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
+import org.stonlexx.protocol.lib.packet.Packet;
+
+import javax.annotation.Nullable;
+
+@Getter
+public class PendingRequest {
+
+    @SuppressWarnings("rawtypes")
+    private final FullResponseHandler handler;
+
+    @Nullable
+    private final Class<? extends Packet> requestClass;
+
+    /**
+     * {@link System#nanoTime()} when the request was sent,
+     * <br>0 - detailed metrics were off and the round trip is not recorded
+     */
+    private final long startTime;
+
+    @Setter
+    private Timeout timeout;
+
+    @SuppressWarnings("rawtypes")
+    public PendingRequest(FullResponseHandler handler) {
+        this(handler, null);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public PendingRequest(FullResponseHandler handler, @Nullable Class<? extends Packet> requestClass) {
+        this.handler = handler;
+        this.requestClass = requestClass;
+        this.startTime = PerformanceMetrics.isDetailedMetricsEnabled() ? System.nanoTime() : 0;
+    }
+
+    public void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
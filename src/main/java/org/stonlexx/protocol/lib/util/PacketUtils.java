@@ -193,4 +193,14 @@ public class PacketUtils {
         buf.writeByte(value);
     }
 
+    /**
+     * Writes a 21-bit VarInt padded to exactly 3 bytes at the given index,
+     * <br>so a frame header can be reserved up front and backfilled later
+     */
+    public void setPaddedVarInt(ByteBuf buf, int index, int value) {
+        buf.setMedium(index, (value & 127 | 128) << 16
+                | ((value >>> 7) & 127 | 128) << 8
+                | (value >>> 14) & 127);
+    }
+
 }
@@ -0,0 +1,66 @@
+package metrics;
+
+import org.stonlexx.protocol.lib.metrics.PerformanceMetrics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hammers one metric from many threads and checks that no value was lost
+ * <br>and that the 1 second rate matches a known load
+ */
+public final class MetricConcurrency {
+
+    private static final int THREADS = 16;
+    private static final int ADDS_PER_THREAD = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        PerformanceMetrics.Metric metric = new PerformanceMetrics.Metric();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int j = 0; j < ADDS_PER_THREAD; j++) {
+                    metric.addValue(1);
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        long expected = (long) THREADS * ADDS_PER_THREAD;
+        check("total", metric.getTotalValue() == expected, metric.getTotalValue() + " != " + expected);
+
+        // 1000 values per second for 3 seconds
+        metric.reset();
+
+        for (int i = 0; i < 30; i++) {
+            metric.addValue(100);
+            Thread.sleep(100);
+        }
+
+        double rate = metric.getSecond();
+        check("rate", rate > 800 && rate < 1200, rate + " is not ~1000/s");
+
+        System.out.println("OK: total " + expected + ", rate " + rate + "/s");
+    }
+
+    private static void check(String name, boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAILED " + name + ": " + message);
+            System.exit(1);
+        }
+    }
+}
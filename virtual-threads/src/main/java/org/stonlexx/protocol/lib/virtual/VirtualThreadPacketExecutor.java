@@ -0,0 +1,56 @@
+package org.stonlexx.protocol.lib.virtual;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import org.stonlexx.protocol.lib.packet.Packet;
+import org.stonlexx.protocol.lib.pipeline.PacketExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Processes every packet of a connection on a virtual thread, in order.
+ * <br>Handlers may block - call {@code awaitPacket()}, JDBC and so on -
+ * <br>without holding up the event loop or a platform thread
+ * <p>
+ * Each channel gets a sequential executor on top of one shared
+ * <br>virtual-thread-per-task executor, so an idle connection costs
+ * <br>no thread at all
+ * </p>
+ */
+public class VirtualThreadPacketExecutor implements PacketExecutor {
+
+    private static final AttributeKey<Executor> SEQUENTIAL_EXECUTOR =
+            AttributeKey.valueOf(VirtualThreadPacketExecutor.class, "sequential-executor");
+
+    private final ExecutorService virtualThreads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("[Virtual] Packet Handler #", 0).factory());
+
+    @Override
+    public boolean offloads(Packet packet) {
+        return true;
+    }
+
+    @Override
+    public void execute(Channel channel, Runnable task) {
+        Executor executor = channel.attr(SEQUENTIAL_EXECUTOR).get();
+
+        if (executor == null) {
+            Executor created = MoreExecutors.newSequentialExecutor(virtualThreads);
+            executor = channel.attr(SEQUENTIAL_EXECUTOR).setIfAbsent(created);
+
+            if (executor == null) {
+                executor = created;
+            }
+        }
+
+        executor.execute(task);
+    }
+
+    @Override
+    public void shutdown() {
+        virtualThreads.shutdown();
+    }
+}